@@ -20,6 +20,10 @@ package io.devcon5.collector;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import io.devcon5.digester.SeriesRouter;
+import io.devcon5.measure.Digester;
+import io.devcon5.measure.MeasurementBatchCodec;
+import io.devcon5.metrics.SelfMetricsReporter;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
@@ -62,8 +66,69 @@ public class Collector extends AbstractVerticle {
 
         JsonObject config = config();
 
+        MeasurementBatchCodec.register(vertx);
+
+        if (config.containsKey("metrics")) {
+            LOG.info("Deploying self-instrumentation metrics reporter");
+            vertx.deployVerticle(SelfMetricsReporter.class.getName(),
+                                 new DeploymentOptions().setConfig(config.getJsonObject("metrics")));
+        }
+
+        final String digestAddress = deployProcessors(config.getJsonObject("processor", new JsonObject()));
+
         config.getJsonObject("collector").forEach(e -> deployComponent(e.getKey(), (JsonObject)e.getValue()));
-        config.getJsonObject("digester").forEach(e -> deployComponent(e.getKey(), (JsonObject)e.getValue()));
+        config.getJsonObject("digester")
+              .forEach(e -> deployDigester(e.getKey(), (JsonObject) e.getValue(), digestAddress));
+    }
+
+    /**
+     * Deploys the processors as a chain in the configured order. The first processor receives the measurements
+     * published by the collectors, each further processor receives the output of its predecessor.
+     *
+     * @return the address the output of the last processor is published to
+     */
+    private String deployProcessors(final JsonObject processors) {
+
+        String input = Digester.DIGEST_ADDR;
+        for (String name : processors.fieldNames()) {
+            final String output = Digester.DIGEST_ADDR + ".processed." + name;
+            deployComponent(name,
+                            processors.getJsonObject(name)
+                                      .copy()
+                                      .put("inputAddress", input)
+                                      .put("outputAddress", output));
+            input = output;
+        }
+        return input;
+    }
+
+    /**
+     * Deploys a digester. If the configuration defines more than one <code>instances</code>, each instance is
+     * deployed with its own <code>instance</code> index and <code>digestAddress</code>, and a
+     * {@link SeriesRouter} distributes the measurements to the instances by their series.
+     */
+    private void deployDigester(final String name, final JsonObject config, final String digestAddress) {
+
+        final int instances = config.getInteger("instances", 1);
+        if (instances <= 1) {
+            deployComponent(name,
+                            Digester.DIGEST_ADDR.equals(digestAddress)
+                            ? config
+                            : config.copy().put("digestAddress", digestAddress));
+            return;
+        }
+        final String address = Digester.DIGEST_ADDR + "." + name;
+        for (int i = 0; i < instances; i++) {
+            deployComponent(name + "#" + i,
+                            config.copy()
+                                  .put("instance", i)
+                                  .put("digestAddress", SeriesRouter.instanceAddress(address, i)));
+        }
+        LOG.info("Routing measurements to {} instances of {}", instances, name);
+        vertx.deployVerticle(SeriesRouter.class.getName(),
+                             new DeploymentOptions().setConfig(new JsonObject().put("address", address)
+                                                                               .put("instances", instances)
+                                                                               .put("digestAddress", digestAddress)));
     }
 
     private void deployComponent(final String name, final JsonObject config) {
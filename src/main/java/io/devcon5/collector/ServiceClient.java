@@ -1,7 +1,13 @@
 package io.devcon5.collector;
 
+import io.devcon5.metrics.Counter;
+import io.devcon5.metrics.Histogram;
+import io.devcon5.metrics.SelfMetrics;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
 
 import java.util.Optional;
@@ -18,13 +24,50 @@ public class ServiceClient {
     private final int port;
     private final String contextRoot;
     private final Optional<String> auth;
+    private final Histogram pollLatency;
+    private final Histogram responseSize;
+    private final Counter pollErrors;
 
     protected ServiceClient(WebClient client, String host, int port, String contextRoot, String auth) {
+        this(client, host, port, contextRoot, auth, null);
+    }
+
+    protected ServiceClient(WebClient client, String host, int port, String contextRoot, String auth, String collector) {
         this.client = client;
         this.host = host;
         this.port = port;
         this.contextRoot = contextRoot;
         this.auth = Optional.ofNullable(auth);
+        final String server = host + ":" + port;
+        this.pollLatency = SelfMetrics.histogram("collector.pollLatency", "collector", collector, "server", server);
+        this.responseSize = SelfMetrics.histogram("collector.responseSize", "collector", collector, "server", server);
+        this.pollErrors = SelfMetrics.counter("collector.pollErrors", "collector", collector, "server", server);
+    }
+
+    /**
+     * Sends a get request and records its latency in microseconds, the size of the response and failed requests in the
+     * self-instrumentation metrics.
+     *
+     * @param url
+     *         the url of the resource, relative to the context root
+     * @param handler
+     *         the handler of the response
+     */
+    public void get(String url, Handler<AsyncResult<HttpResponse<Buffer>>> handler) {
+        final long start = System.nanoTime();
+        newGetRequest(url).send(resp -> {
+            pollLatency.recordSince(start);
+            if (resp.succeeded()) {
+                final Buffer body = resp.result().body();
+                responseSize.record(body == null ? 0 : body.length());
+                if (resp.result().statusCode() >= 400) {
+                    pollErrors.increment();
+                }
+            } else {
+                pollErrors.increment();
+            }
+            handler.handle(resp);
+        });
     }
 
     public HttpRequest<Buffer> newGetRequest(String url){
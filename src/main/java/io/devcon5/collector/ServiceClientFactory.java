@@ -6,17 +6,19 @@ import io.vertx.ext.web.client.WebClient;
 public class ServiceClientFactory {
 
     private final WebClient client;
+    private final String collector;
 
-    protected ServiceClientFactory(WebClient client) {
+    protected ServiceClientFactory(WebClient client, String collector) {
         this.client = client;
+        this.collector = collector;
     }
 
     public ServiceClient createClient(String host, int port, String contextRoot) {
-        return new ServiceClient(client, host, port, contextRoot, null);
+        return new ServiceClient(client, host, port, contextRoot, null, collector);
     }
 
     public ServiceClient createClient(String host, int port, String contextRoot, String auth) {
-        return new ServiceClient(client, host, port, contextRoot, auth);
+        return new ServiceClient(client, host, port, contextRoot, auth, collector);
     }
 
     public ServiceClient createClient(JsonObject config) {
@@ -27,7 +29,22 @@ public class ServiceClientFactory {
     }
 
     public static ServiceClientFactory newFactory(final WebClient client) {
-        return new ServiceClientFactory(client);
+        return new ServiceClientFactory(client, null);
+    }
+
+    /**
+     * Creates a factory for clients whose requests are recorded in the self-instrumentation metrics of the
+     * collector.
+     *
+     * @param client
+     *         the web client to send the requests
+     * @param collector
+     *         the name of the collector, used as tag of the metrics
+     *
+     * @return the factory
+     */
+    public static ServiceClientFactory newFactory(final WebClient client, final String collector) {
+        return new ServiceClientFactory(client, collector);
     }
 
 
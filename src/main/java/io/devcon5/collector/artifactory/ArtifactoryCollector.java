@@ -30,10 +30,12 @@ import java.util.regex.Pattern;
 import io.devcon5.collector.ResultHandler;
 import io.devcon5.collector.ServiceClient;
 import io.devcon5.collector.ServiceClientFactory;
-import io.devcon5.measure.BinaryEncoding;
 import io.devcon5.measure.Digester;
-import io.devcon5.measure.Encoder;
 import io.devcon5.measure.Measurement;
+import io.devcon5.measure.MeasurementBatch;
+import io.devcon5.measure.MeasurementBatchCodec;
+import io.devcon5.metrics.Counter;
+import io.devcon5.metrics.SelfMetrics;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
@@ -77,23 +79,26 @@ public class ArtifactoryCollector extends AbstractVerticle {
     private static final Pattern PERCENT_PATTERN = Pattern.compile("(\\d+(\\.\\d+)?)\\s*%");
 
     private WebClient webclient;
-    private Encoder encoder;
     private ResultHandler<Measurement[]> resultHandler;
 
     @Override
     public void start() {
 
+        MeasurementBatchCodec.register(vertx);
         this.webclient = WebClient.create(vertx);
-        this.encoder = BinaryEncoding.encoder();
+        final Counter processErrors = SelfMetrics.counter("collector.processErrors", "collector", "artifactory");
         this.resultHandler = ResultHandler.create(Measurement[].class)
                                           .onSuccess(ms -> vertx.eventBus()
-                                                                .publish(Digester.DIGEST_ADDR, encoder.encode(ms)))
-                                          .orElse(t -> LOG.error("Error fetching metrics", t));
+                                                                .publish(Digester.DIGEST_ADDR, MeasurementBatch.of(ms)))
+                                          .orElse(t -> {
+                                              processErrors.increment();
+                                              LOG.error("Error fetching metrics", t);
+                                          });
 
         //default interval for all servers
         final long interval = config().getLong("interval", 60000L);
 
-        final ServiceClientFactory factory = ServiceClientFactory.newFactory(webclient);
+        final ServiceClientFactory factory = ServiceClientFactory.newFactory(webclient, "artifactory");
 
         config().getJsonArray("servers")
                 .stream()
@@ -109,7 +114,7 @@ public class ArtifactoryCollector extends AbstractVerticle {
     }
 
     private Handler<Long> pollStatus(ServiceClient client) {
-        return l -> client.newGetRequest("/api/storagesummary").send(this::processResult);
+        return l -> client.get("/api/storagesummary", this::processResult);
     }
 
     private void processResult(AsyncResult<HttpResponse<Buffer>> resp) {
@@ -3,10 +3,12 @@ package io.devcon5.collector.sonarqube;
 import io.devcon5.collector.ResultHandler;
 import io.devcon5.collector.ServiceClient;
 import io.devcon5.collector.ServiceClientFactory;
-import io.devcon5.measure.BinaryEncoding;
 import io.devcon5.measure.Digester;
-import io.devcon5.measure.Encoder;
 import io.devcon5.measure.Measurement;
+import io.devcon5.measure.MeasurementBatch;
+import io.devcon5.measure.MeasurementBatchCodec;
+import io.devcon5.metrics.Counter;
+import io.devcon5.metrics.SelfMetrics;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
@@ -29,24 +31,27 @@ public class SonarqubeCollector extends AbstractVerticle {
 
     private static final Logger LOG = getLogger(SonarqubeCollector.class);
 
-    private Encoder<Buffer> encoder;
     private WebClient webclient;
     private ResultHandler<Measurement[]> resultHandler;
 
     @Override
     public void start()  {
 
-        this.encoder = BinaryEncoding.encoder();
+        MeasurementBatchCodec.register(vertx);
         this.webclient = WebClient.create(vertx);
+        final Counter processErrors = SelfMetrics.counter("collector.processErrors", "collector", "sonarqube");
         this.resultHandler = ResultHandler.create(Measurement[].class)
                                           .onSuccess(ms -> vertx.eventBus()
-                                                                .publish(Digester.DIGEST_ADDR, encoder.encode(ms)))
-                                          .orElse(t -> LOG.error("Error fetching metrics", t));
+                                                                .publish(Digester.DIGEST_ADDR, MeasurementBatch.of(ms)))
+                                          .orElse(t -> {
+                                              processErrors.increment();
+                                              LOG.error("Error fetching metrics", t);
+                                          });
 
         //default interval for all servers
         final long interval = config().getLong("interval", 60000L);
 
-        final ServiceClientFactory factory = ServiceClientFactory.newFactory(webclient);
+        final ServiceClientFactory factory = ServiceClientFactory.newFactory(webclient, "sonarqube");
 
         config().getJsonArray("servers")
                 .stream()
@@ -64,12 +69,12 @@ public class SonarqubeCollector extends AbstractVerticle {
     private Handler<Long> pollStatus(ServiceClient client) {
 
         return l -> {
-            client.newGetRequest("/api/components/search?qualifiers=BRC,DIR,FIL,TRK,UTS&ps=100000").send(this::processProjects);
-            client.newGetRequest("/api/ce/activity").send(this::processCeActivity);
-            client.newGetRequest("/api/issues/search?ps=1&severities=BLOCKER").send(countIssues("BLOCKER"));
-            client.newGetRequest("/api/issues/search?ps=1&severities=CRITICAL").send(countIssues("CRITICAL"));
-            client.newGetRequest("/api/issues/search?ps=1&severities=MAJOR").send(countIssues("MAJOR"));
-            client.newGetRequest("/api/issues/search?ps=1&severities=MINOR").send(countIssues("MINOR"));
+            client.get("/api/components/search?qualifiers=BRC,DIR,FIL,TRK,UTS&ps=100000", this::processProjects);
+            client.get("/api/ce/activity", this::processCeActivity);
+            client.get("/api/issues/search?ps=1&severities=BLOCKER", countIssues("BLOCKER"));
+            client.get("/api/issues/search?ps=1&severities=CRITICAL", countIssues("CRITICAL"));
+            client.get("/api/issues/search?ps=1&severities=MAJOR", countIssues("MAJOR"));
+            client.get("/api/issues/search?ps=1&severities=MINOR", countIssues("MINOR"));
         };
     }
 
@@ -0,0 +1,176 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.digester;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.devcon5.measure.Digester;
+import io.devcon5.measure.Measurement;
+import io.devcon5.measure.MeasurementBatch;
+import io.devcon5.measure.MeasurementBatchCodec;
+import io.devcon5.measure.MeasurementView;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Distributes received measurements to the instances of a digester. Each series is always routed to the same
+ * instance, so the order of the measurements of a series is preserved while the digester instances run on
+ * different event loops. The router does not rebuild any measurement: batches are partitioned by the precomputed
+ * hash of the series key of each row and the partitions reference the same measurement objects, binary encoded
+ * measurements are routed with a {@link MeasurementView} without decoding them. Only other encodings, such as
+ * JSON, are decoded before routing.
+ * <p>
+ * The router is configured with the following properties:
+ * <ul>
+ * <li>address - the address prefix of the instances, instance <code>i</code> receives on
+ * <code>address.i</code></li>
+ * <li>instances - the number of instances</li>
+ * <li>digestAddress - the address to receive measurements from, default is {@link Digester#DIGEST_ADDR}</li>
+ * </ul>
+ */
+public class SeriesRouter extends AbstractVerticle implements Digester {
+
+    private String address;
+    private int instances;
+
+    @Override
+    public void start() throws Exception {
+
+        final JsonObject config = config();
+        this.address = config.getString("address");
+        this.instances = config.getInteger("instances");
+        if (address == null) {
+            throw new IllegalArgumentException("address is not set");
+        }
+        if (instances < 1) {
+            throw new IllegalArgumentException("instances must be positive: " + instances);
+        }
+        MeasurementBatchCodec.register(vertx);
+        vertx.eventBus().consumer(Digester.digestAddress(config), msg -> {
+            final Object body = msg.body();
+            if (body instanceof MeasurementBatch) {
+                route((MeasurementBatch) body);
+            } else if (body instanceof Buffer && MeasurementView.isViewable((Buffer) body)) {
+                route((Buffer) body);
+            } else {
+                route(MeasurementBatch.of(decode(body)));
+            }
+        });
+    }
+
+    /**
+     * Creates the address of a digester instance.
+     *
+     * @param address
+     *         the address prefix of the instances
+     * @param instance
+     *         the index of the instance
+     *
+     * @return the address the instance receives measurements on
+     */
+    public static String instanceAddress(String address, int instance) {
+
+        return address + "." + instance;
+    }
+
+    /**
+     * Determines the instance that receives the measurements of a series.
+     *
+     * @param m
+     *         the measurement
+     * @param instances
+     *         the number of instances
+     *
+     * @return the index of the instance
+     */
+    public static int instanceOf(Measurement m, int instances) {
+
+        return instanceOf(m.seriesKey().longHash(), instances);
+    }
+
+    private static int instanceOf(long seriesHash, int instances) {
+
+        return (int) ((seriesHash >>> 1) % instances);
+    }
+
+    /**
+     * Routes binary encoded measurements without decoding them, the encoded measurements are copied to one block
+     * per instance.
+     */
+    private void route(Buffer encoded) {
+
+        if (instances == 1) {
+            vertx.eventBus().send(instanceAddress(address, 0), encoded);
+            return;
+        }
+        final Buffer[] partitions = new Buffer[instances];
+        final int[] counts = new int[instances];
+        final MeasurementView view = MeasurementView.of(encoded);
+        while (view.next()) {
+            final int instance = instanceOf(view.seriesHash(), instances);
+            if (partitions[instance] == null) {
+                partitions[instance] = Buffer.buffer(encoded.length() / instances + 64);
+            }
+            view.copyTo(partitions[instance]);
+            counts[instance]++;
+        }
+        for (int i = 0; i < instances; i++) {
+            if (counts[i] > 0) {
+                vertx.eventBus().send(instanceAddress(address, i), MeasurementView.toBlock(partitions[i], counts[i]));
+            }
+        }
+    }
+
+    /**
+     * Routes a batch by reference, a batch that only contains series of a single instance is passed on as is.
+     */
+    private void route(MeasurementBatch batch) {
+
+        if (instances == 1) {
+            send(0, batch);
+            return;
+        }
+        final List<List<Measurement>> partitions = new ArrayList<>(instances);
+        for (int i = 0; i < instances; i++) {
+            partitions.add(new ArrayList<>(batch.size() / instances + 1));
+        }
+        for (int row = 0, size = batch.size(); row < size; row++) {
+            final Measurement m = batch.get(row);
+            partitions.get(instanceOf(m, instances)).add(m);
+        }
+        for (int i = 0; i < instances; i++) {
+            if (partitions.get(i).size() == batch.size()) {
+                send(i, batch);
+                return;
+            }
+        }
+        for (int i = 0; i < instances; i++) {
+            final List<Measurement> partition = partitions.get(i);
+            if (!partition.isEmpty()) {
+                send(i, MeasurementBatch.of(partition));
+            }
+        }
+    }
+
+    private void send(int instance, MeasurementBatch batch) {
+
+        vertx.eventBus().send(instanceAddress(address, instance), batch);
+    }
+}
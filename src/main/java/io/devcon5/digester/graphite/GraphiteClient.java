@@ -0,0 +1,284 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.graphite;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import io.devcon5.metrics.Counter;
+import io.devcon5.metrics.SelfMetrics;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
+import io.vertx.core.net.NetSocket;
+import org.slf4j.Logger;
+
+/**
+ * Writes lines to Graphite over a single persistent TCP connection. Lines are collected in a batch that is written
+ * to the socket once it exceeds <code>batchBytes</code> or the <code>batchLinger</code> time is over. While the
+ * socket is disconnected or its write queue is full, batches are held back in a bounded queue and written when the
+ * socket has drained or is reconnected. When the queue is full, the oldest batch is dropped. On close, the client
+ * waits up to <code>stopTimeout</code> ms until the queued batches are written, the remaining batches are dropped.
+ * <p>
+ * A lost connection is reconnected with an exponential backoff from <code>reconnectDelay</code> up to
+ * <code>reconnectMaxDelay</code> ms. The client is not thread-safe and must only be used from the context of the
+ * verticle that created it.
+ */
+class GraphiteClient {
+
+    private static final Logger LOG = getLogger(GraphiteClient.class);
+
+    public static final int DEFAULT_PORT = 2003;
+    public static final int DEFAULT_BATCH_BYTES = 64 * 1024;
+    public static final long DEFAULT_BATCH_LINGER = 100L;
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+    public static final long DEFAULT_STOP_TIMEOUT = 10000L;
+
+    private final Vertx vertx;
+    private final NetClient netClient;
+    private final String host;
+    private final int port;
+    private final int batchBytes;
+    private final long batchLinger;
+    private final int maxQueued;
+    private final long reconnectDelay;
+    private final long reconnectMaxDelay;
+    private final long stopTimeout;
+    private final Deque<Buffer> queued = new ArrayDeque<>();
+    private final Counter droppedBatches;
+    private final Counter reconnects;
+
+    private Buffer batch;
+    private long lingerTimer = -1;
+    private NetSocket socket;
+    private boolean connecting;
+    private int failedConnects;
+    private boolean closed;
+    private Handler<Void> drainedHandler;
+
+    GraphiteClient(Vertx vertx, String host, int port, JsonObject config) {
+
+        this.vertx = vertx;
+        this.host = host;
+        this.port = port;
+        this.batchBytes = config.getInteger("batchBytes", DEFAULT_BATCH_BYTES);
+        this.batchLinger = config.getLong("batchLinger", DEFAULT_BATCH_LINGER);
+        this.maxQueued = config.getInteger("queueSize", DEFAULT_QUEUE_SIZE);
+        this.reconnectDelay = config.getLong("reconnectDelay", 1000L);
+        this.reconnectMaxDelay = config.getLong("reconnectMaxDelay", 30000L);
+        this.stopTimeout = config.getLong("stopTimeout", DEFAULT_STOP_TIMEOUT);
+        this.netClient = vertx.createNetClient(new NetClientOptions().setTcpNoDelay(true)
+                                                                      .setTcpKeepAlive(true)
+                                                                      .setConnectTimeout(5000));
+        this.batch = Buffer.buffer(batchBytes);
+        final String endpoint = host + ":" + port;
+        this.droppedBatches = SelfMetrics.counter("graphite.droppedBatches", "endpoint", endpoint);
+        this.reconnects = SelfMetrics.counter("graphite.reconnects", "endpoint", endpoint);
+    }
+
+    /**
+     * Opens the connection.
+     */
+    void connect() {
+
+        if (connecting || socket != null || closed) {
+            return;
+        }
+        connecting = true;
+        netClient.connect(port, host, connected -> {
+            connecting = false;
+            if (connected.failed()) {
+                LOG.warn("Could not connect to Graphite {}:{}", host, port, connected.cause());
+                scheduleReconnect();
+                return;
+            }
+            if (closed) {
+                connected.result().close();
+                return;
+            }
+            failedConnects = 0;
+            final NetSocket connection = connected.result();
+            connection.closeHandler(v -> disconnected(connection));
+            connection.exceptionHandler(t -> LOG.warn("Connection to Graphite {}:{} failed", host, port, t));
+            connection.drainHandler(v -> drain());
+            socket = connection;
+            LOG.info("Connected to Graphite {}:{}", host, port);
+            drain();
+        });
+    }
+
+    /**
+     * Adds lines to the current batch.
+     *
+     * @param lines
+     *         the encoded lines
+     */
+    void write(Buffer lines) {
+
+        batch.appendBuffer(lines);
+        if (batch.length() >= batchBytes) {
+            flush();
+        } else if (lingerTimer == -1 && batch.length() > 0) {
+            lingerTimer = vertx.setTimer(batchLinger, id -> {
+                lingerTimer = -1;
+                flush();
+            });
+        }
+    }
+
+    /**
+     * Writes the current batch to the socket or to the queue, if the socket is not writable.
+     */
+    void flush() {
+
+        if (lingerTimer != -1) {
+            vertx.cancelTimer(lingerTimer);
+            lingerTimer = -1;
+        }
+        if (batch.length() == 0) {
+            return;
+        }
+        final Buffer full = batch;
+        batch = Buffer.buffer(batchBytes);
+        if (queued.isEmpty() && isWritable()) {
+            socket.write(full);
+        } else {
+            enqueue(full);
+        }
+    }
+
+    /**
+     * @return the number of batches waiting for the socket
+     */
+    int queued() {
+
+        return queued.size();
+    }
+
+    /**
+     * @return <code>true</code> if the client is connected to Graphite
+     */
+    boolean isConnected() {
+
+        return socket != null;
+    }
+
+    /**
+     * Flushes the current batch and closes the connection once all queued batches are written. Batches that are
+     * not written within the stop timeout are dropped and counted.
+     *
+     * @param handler
+     *         the handler that is notified when the connection is closed
+     */
+    void close(Handler<AsyncResult<Void>> handler) {
+
+        flush();
+        if (queued.isEmpty()) {
+            closeConnection(handler);
+            return;
+        }
+        final long timeout = vertx.setTimer(stopTimeout, id -> {
+            drainedHandler = null;
+            final int dropped = queued.size();
+            queued.clear();
+            droppedBatches.add(dropped);
+            LOG.warn("Could not write all batches to Graphite {}:{} within {} ms, dropped {} batches",
+                     host,
+                     port,
+                     stopTimeout,
+                     dropped);
+            closeConnection(handler);
+        });
+        drainedHandler = drained -> {
+            vertx.cancelTimer(timeout);
+            closeConnection(handler);
+        };
+    }
+
+    private void closeConnection(Handler<AsyncResult<Void>> handler) {
+
+        closed = true;
+        if (socket != null) {
+            socket.close();
+        }
+        netClient.close();
+        handler.handle(Future.succeededFuture());
+    }
+
+    private boolean isWritable() {
+
+        return socket != null && !socket.writeQueueFull();
+    }
+
+    private void enqueue(Buffer lines) {
+
+        if (queued.size() >= maxQueued) {
+            queued.poll();
+            droppedBatches.increment();
+            LOG.warn("Graphite write queue is full, dropped oldest batch");
+        }
+        queued.add(lines);
+    }
+
+    /**
+     * Writes queued batches until the queue is empty or the write queue of the socket is full.
+     */
+    private void drain() {
+
+        while (!queued.isEmpty() && isWritable()) {
+            socket.write(queued.poll());
+        }
+        if (queued.isEmpty() && drainedHandler != null) {
+            final Handler<Void> drained = drainedHandler;
+            drainedHandler = null;
+            drained.handle(null);
+        }
+    }
+
+    private void disconnected(NetSocket closedSocket) {
+
+        if (socket != closedSocket) {
+            return;
+        }
+        socket = null;
+        if (!closed) {
+            LOG.warn("Connection to Graphite {}:{} closed", host, port);
+            scheduleReconnect();
+        }
+    }
+
+    private void scheduleReconnect() {
+
+        if (closed) {
+            return;
+        }
+        final long delay = Math.min(reconnectMaxDelay, reconnectDelay << Math.min(failedConnects++, 20));
+        vertx.setTimer(delay, id -> {
+            reconnects.increment();
+            connect();
+        });
+    }
+}
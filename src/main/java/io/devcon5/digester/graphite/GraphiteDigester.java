@@ -0,0 +1,82 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.graphite;
+
+import io.devcon5.measure.Digester;
+import io.devcon5.measure.Encoder;
+import io.devcon5.measure.MeasurementBatch;
+import io.devcon5.measure.MeasurementBatchCodec;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Digester that writes measurements to Graphite using the plaintext protocol, see {@link GraphiteProtocol}. The
+ * lines are written over a persistent TCP connection in batches, see {@link GraphiteClient}.
+ * <p>
+ * The digester is configured with the following properties:
+ * <ul>
+ * <li>host - the host of the Graphite server, default is localhost</li>
+ * <li>port - the port of the plaintext listener, default is 2003</li>
+ * <li>prefix - a prefix for all paths, default is none</li>
+ * <li>tagged - <code>true</code> to write the tags as Graphite tags instead of flattening them into the path,
+ * default is false</li>
+ * <li>batchBytes - the size in bytes at which a batch is written, default is 64 KB</li>
+ * <li>batchLinger - the max time in ms lines are held back before the batch is written, default is 100</li>
+ * <li>queueSize - the max number of batches held back while Graphite is not writable, default is 1000</li>
+ * <li>reconnectDelay, reconnectMaxDelay - the backoff in ms for reconnecting, default is 1000 up to 30000</li>
+ * <li>stopTimeout - the max time in ms to write the held back batches when the digester is stopped, default is
+ * 10000</li>
+ * </ul>
+ */
+public class GraphiteDigester extends AbstractVerticle implements Digester {
+
+    private Encoder<Buffer> encoder;
+    private GraphiteClient client;
+
+    @Override
+    public void start() throws Exception {
+
+        final JsonObject config = config();
+        MeasurementBatchCodec.register(vertx);
+
+        this.encoder = GraphiteProtocol.encoder(config.getString("prefix"), config.getBoolean("tagged", false));
+        this.client = new GraphiteClient(vertx,
+                                         config.getString("host", "localhost"),
+                                         config.getInteger("port", GraphiteClient.DEFAULT_PORT),
+                                         config);
+        client.connect();
+
+        vertx.eventBus().consumer(Digester.digestAddress(config), msg -> {
+            final Object body = msg.body();
+            if (body instanceof MeasurementBatch) {
+                client.write(encoder.encode(((MeasurementBatch) body).asList()));
+            } else {
+                client.write(encoder.encode(decode(body)));
+            }
+        });
+    }
+
+    @Override
+    public void stop(Future<Void> stopFuture) throws Exception {
+
+        client.close(stopFuture);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.graphite;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.devcon5.digester.influx.LineWriter;
+import io.devcon5.measure.Encoder;
+import io.devcon5.measure.Measurement;
+import io.devcon5.measure.SeriesKey;
+import io.devcon5.measure.ValueType;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Encodes measurements in the plaintext protocol of Graphite. Every numeric value of a measurement becomes a line
+ * <code>&lt;path&gt; &lt;value&gt; &lt;timestamp&gt;</code> with the timestamp in seconds, booleans are written as
+ * 0 and 1, strings and non-finite values are skipped.
+ * <p>
+ * The path is either flattened, with the tag values as path elements in the order of the tag names:
+ * <pre>
+ *     [prefix.]name.tagValue1.tagValue2.valueName
+ * </pre>
+ * or tagged, using the tag support of Graphite 1.1:
+ * <pre>
+ *     [prefix.]name.valueName;tag1=value1;tag2=value2
+ * </pre>
+ */
+public class GraphiteProtocol {
+
+    /**
+     * Max number of cached series paths per encoder, the cache is cleared when exceeded
+     */
+    static final int MAX_CACHED_PATHS = 100_000;
+
+    private GraphiteProtocol() {
+
+    }
+
+    /**
+     * Creates an encoder for the plaintext protocol. The encoder caches the paths of the series and is not
+     * thread-safe.
+     *
+     * @param prefix
+     *         the prefix of all paths, may be <code>null</code>
+     * @param tagged
+     *         <code>true</code> to write the tags as Graphite tags, <code>false</code> to flatten them into the path
+     *
+     * @return the encoder
+     */
+    public static Encoder<Buffer> encoder(String prefix, boolean tagged) {
+
+        return new PlaintextEncoder(prefix == null || prefix.isEmpty() ? "" : sanitize(prefix, false) + '.', tagged);
+    }
+
+    /**
+     * Replaces characters that have a meaning in the plaintext protocol by an underscore. Dots separate the path
+     * elements and are kept for names but replaced in tag values of flattened paths.
+     */
+    static String sanitize(String s, boolean replaceDots) {
+
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            final boolean replace = c <= ' ' || c == ';' || c == '=' || c == '~' || c == '!' || c == '^'
+                    || (replaceDots && (c == '.' || c == '/'));
+            if (replace && sb == null) {
+                sb = new StringBuilder(s.length()).append(s, 0, i);
+            }
+            if (sb != null) {
+                sb.append(replace ? '_' : c);
+            }
+        }
+        return sb == null ? s : sb.toString();
+    }
+
+    private static class PlaintextEncoder implements Encoder<Buffer> {
+
+        private final String prefix;
+        private final boolean tagged;
+        /**
+         * Paths per series, encoded per value name
+         */
+        private final Map<SeriesKey, Path> paths = new HashMap<>();
+
+        PlaintextEncoder(String prefix, boolean tagged) {
+
+            this.prefix = prefix;
+            this.tagged = tagged;
+        }
+
+        @Override
+        public Buffer encode(Collection<Measurement> measurements) {
+
+            final LineWriter out = new LineWriter(measurements.size() * 64);
+            for (Measurement m : measurements) {
+                final Path path = path(m.seriesKey());
+                final long seconds = m.getTimestamp() / 1_000_000_000L;
+                for (int i = 0, len = m.valueCount(); i < len; i++) {
+                    final ValueType type = m.getValueType(i);
+                    if (type == ValueType.STRING) {
+                        continue;
+                    }
+                    final long raw = m.getRawValue(i);
+                    if (type.isFloatingPoint()) {
+                        final double d = type.rawToDouble(raw);
+                        if (Double.isNaN(d) || Double.isInfinite(d)) {
+                            continue;
+                        }
+                        out.write(path.of(m.getValueName(i)));
+                        if (type == ValueType.FLOAT) {
+                            out.write((float) d);
+                        } else {
+                            out.write(d);
+                        }
+                    } else {
+                        out.write(path.of(m.getValueName(i))).write(type == ValueType.BOOLEAN && raw != 0 ? 1 : raw);
+                    }
+                    out.write(' ').write(seconds).write('\n');
+                }
+            }
+            return out.toBuffer();
+        }
+
+        private Path path(SeriesKey key) {
+
+            Path path = paths.get(key);
+            if (path == null) {
+                if (paths.size() >= MAX_CACHED_PATHS) {
+                    paths.clear();
+                }
+                final StringBuilder head = new StringBuilder(64).append(prefix).append(sanitize(key.getName(), false));
+                final StringBuilder tail = new StringBuilder();
+                for (int i = 0; i < key.tagCount(); i++) {
+                    final String value = key.getTagValue(i);
+                    if (value.isEmpty()) {
+                        continue;
+                    }
+                    if (tagged) {
+                        tail.append(';')
+                            .append(sanitize(key.getTagKey(i), false))
+                            .append('=')
+                            .append(sanitize(value, false));
+                    } else {
+                        head.append('.').append(sanitize(value, true));
+                    }
+                }
+                path = new Path(head.append('.').toString(), tail.append(' ').toString());
+                paths.put(key, path);
+            }
+            return path;
+        }
+    }
+
+    /**
+     * The paths of the values of one series
+     */
+    private static class Path {
+
+        private final String head;
+        private final String tail;
+        /**
+         * Complete path including the separator before the value, UTF-8 encoded, per value name
+         */
+        private final Map<String, byte[]> values = new HashMap<>();
+
+        Path(String head, String tail) {
+
+            this.head = head;
+            this.tail = tail;
+        }
+
+        byte[] of(String valueName) {
+
+            byte[] path = values.get(valueName);
+            if (path == null) {
+                path = (head + sanitize(valueName, false) + tail).getBytes(StandardCharsets.UTF_8);
+                values.put(valueName, path);
+            }
+            return path;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.influx;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Leases direct buffers from the pooled allocator of Netty for encoding batches. A leased buffer is returned to the
+ * pool with {@link #release(Buffer)} once the batch is written, so steady-state encoding reuses the same memory
+ * instead of allocating a new heap buffer for every batch. The pool is not thread-safe and must only be used from
+ * the context of the verticle that created it.
+ */
+class BufferPool {
+
+    private final ByteBufAllocator allocator;
+    private final Map<Buffer, ByteBuf> leased = new IdentityHashMap<>();
+
+    BufferPool() {
+
+        this(PooledByteBufAllocator.DEFAULT);
+    }
+
+    BufferPool(ByteBufAllocator allocator) {
+
+        this.allocator = allocator;
+    }
+
+    /**
+     * Leases a buffer.
+     *
+     * @param initialSize
+     *         the initial capacity of the buffer, it grows when more bytes are appended
+     *
+     * @return an empty buffer
+     */
+    Buffer lease(int initialSize) {
+
+        final ByteBuf byteBuf = allocator.directBuffer(initialSize);
+        final Buffer buffer = Buffer.buffer(byteBuf);
+        leased.put(buffer, byteBuf);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used afterwards. Buffers that were not leased from this
+     * pool, i.e. batches read from the spool, are ignored, as are buffers that were already released.
+     *
+     * @param buffer
+     *         the buffer to release
+     */
+    void release(Buffer buffer) {
+
+        final ByteBuf byteBuf = leased.remove(buffer);
+        if (byteBuf != null) {
+            byteBuf.release();
+        }
+    }
+
+    /**
+     * Returns all leased buffers to the pool.
+     */
+    void releaseAll() {
+
+        leased.values().forEach(ByteBuf::release);
+        leased.clear();
+    }
+
+    /**
+     * @return the number of buffers that are currently leased
+     */
+    int leased() {
+
+        return leased.size();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.digester.influx;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps hash keys to nodes using consistent hashing. Every node is placed at a number of virtual points on a ring of
+ * 64 bit hashes, a key belongs to the node of the first point at or after the key's position. Adding or removing a
+ * node therefore only moves the keys of that node, and the virtual points spread the keys evenly. The ring is
+ * immutable.
+ *
+ * @param <T>
+ *         the type of the nodes
+ */
+class ConsistentHashRing<T> {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] points;
+    private final Object[] owners;
+
+    /**
+     * Creates a ring.
+     *
+     * @param nodes
+     *         the nodes of the ring
+     * @param names
+     *         the names of the nodes, at the same position as the node, used to place the node on the ring. The
+     *         name must remain the same across restarts and reconfigurations.
+     * @param virtualNodes
+     *         the number of points per node
+     */
+    ConsistentHashRing(List<T> nodes, List<String> names, int virtualNodes) {
+
+        if (nodes.isEmpty() || nodes.size() != names.size()) {
+            throw new IllegalArgumentException("nodes and names must not be empty and have the same size");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+        }
+        final int count = nodes.size() * virtualNodes;
+        final long[] hashes = new long[count];
+        final int[] index = new int[count];
+        for (int n = 0, p = 0; n < nodes.size(); n++) {
+            for (int v = 0; v < virtualNodes; v++, p++) {
+                hashes[p] = hash(names.get(n) + "#" + v);
+                index[p] = n;
+            }
+        }
+        //sort the points, keeping the node of each point
+        final Long[] order = new Long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = ((long) i);
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a.intValue()], hashes[b.intValue()]));
+        this.points = new long[count];
+        this.owners = new Object[count];
+        for (int i = 0; i < count; i++) {
+            final int p = order[i].intValue();
+            this.points[i] = hashes[p];
+            this.owners[i] = nodes.get(index[p]);
+        }
+    }
+
+    /**
+     * Determines the node for a key.
+     *
+     * @param keyHash
+     *         the 64 bit hash of the key
+     *
+     * @return the node owning the key
+     */
+    @SuppressWarnings("unchecked")
+    T get(long keyHash) {
+
+        //mixing decorrelates the position from other uses of the same key hash, i.e. instance routing
+        final long position = mix(keyHash);
+        int i = Arrays.binarySearch(points, position);
+        if (i < 0) {
+            i = -i - 1;
+            if (i == points.length) {
+                i = 0;
+            }
+        }
+        return (T) owners[i];
+    }
+
+    private static long hash(String s) {
+
+        long h = FNV_OFFSET;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Finalizer of the 64 bit MurmurHash3, spreads the bits of the hash over the whole range.
+     */
+    private static long mix(long h) {
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -18,30 +18,48 @@
 
 package io.devcon5.digester.influx;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 import io.devcon5.measure.Encoder;
 import io.devcon5.measure.Measurement;
+import io.netty.buffer.ByteBuf;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.client.HttpRequest;
 import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.WebClientOptions;
+import org.slf4j.Logger;
+
+public class InfluxClient implements InfluxTransport {
 
-public class InfluxClient {
+    private static final Logger LOG = getLogger(InfluxClient.class);
 
     public static final int DEFAULT_PORT = 8086;
     public static final String DEFAULT_HOST = "localhost";
 
+    private final Vertx vertx;
     private final WebClient webclient;
     private final Encoder<Buffer> encoder;
     private String database;
+    private RetryPolicy retryPolicy = RetryPolicy.none();
+    private Precision precision;
+    private int compressionLevel = Deflater.NO_COMPRESSION;
+    private int compressionThreshold;
 
-    InfluxClient(WebClient webclient) {
+    InfluxClient(Vertx vertx, WebClient webclient) {
+        this.vertx = vertx;
         this.webclient = webclient;
         this.encoder = LineProtocol.encoder();
     }
@@ -61,13 +79,99 @@ public class InfluxClient {
     }
 
     public InfluxClient send(Collection<Measurement> m, String database, Handler<AsyncResult<Void>> handler) {
-        this.webclient.post("/write")
-                      .addQueryParam("db", database)
-                      .putHeader("Content-Type", "application/x-www-form-urlencoded")
-                      .sendBuffer(encoder.encode(m), resultHandler(handler));
+        return write(encoder.encode(m), database, handler);
+    }
+
+    /**
+     * Writes measurements that are already encoded in line protocol.
+     *
+     * @param lines
+     *         the encoded measurements, one per line
+     * @param handler
+     *         the handler that is notified when the write completed
+     *
+     * @return this client
+     */
+    @Override
+    public InfluxClient write(Buffer lines, Handler<AsyncResult<Void>> handler) {
+        return write(lines, getDatabase(), handler);
+    }
+
+    public InfluxClient write(Buffer lines, String database, Handler<AsyncResult<Void>> handler) {
+        if (compressionLevel == Deflater.NO_COMPRESSION) {
+            post(lines, database, false, 0, handler);
+            return this;
+        }
+        //compression is cpu bound and must not block the event loop. Writes below the threshold take the same ordered
+        //path, so the batches are posted in the order they were written
+        final boolean compress = lines.length() >= compressionThreshold;
+        final int level = compressionLevel;
+        vertx.<Buffer>executeBlocking(f -> f.complete(compress ? gzip(lines, level) : lines), true, body -> {
+            if (body.succeeded()) {
+                post(body.result(), database, compress, 0, handler);
+            } else {
+                handler.handle(Future.failedFuture(body.cause()));
+            }
+        });
         return this;
     }
 
+    /**
+     * Posts the already encoded body, retrying according to the retry policy. Retries send the same buffer again.
+     */
+    private void post(Buffer body, String database, boolean gzipped, int retry, Handler<AsyncResult<Void>> handler) {
+        final HttpRequest<Buffer> request = this.webclient.post("/write")
+                                                          .addQueryParam("db", database)
+                                                          .putHeader("Content-Type",
+                                                                  "application/x-www-form-urlencoded");
+        if (precision != null) {
+            request.addQueryParam("precision", precision.parameter());
+        }
+        if (gzipped) {
+            request.putHeader("Content-Encoding", "gzip");
+        }
+        request.sendBuffer(body, resultHandler(result -> {
+            if (result.succeeded() || !retryPolicy.canRetry(retry + 1, result.cause())) {
+                handler.handle(result);
+                return;
+            }
+            final String retryAfter = result.cause() instanceof RetryAfter
+                                      ? ((RetryAfter) result.cause()).retryAfter
+                                      : null;
+            final long delay = retryPolicy.delay(retry + 1, retryAfter);
+            LOG.debug("Write failed, retrying in {} ms", delay, result.cause());
+            vertx.setTimer(delay, id -> post(body, database, gzipped, retry + 1, handler));
+        }));
+    }
+
+    static Buffer gzip(Buffer data, int level) {
+
+        final Buffer out = Buffer.buffer(data.length() / 4 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(new BufferOutputStream(out), 8192) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            final ByteBuf bytes = data.getByteBuf();
+            if (bytes.hasArray()) {
+                gzip.write(bytes.array(), bytes.arrayOffset() + bytes.readerIndex(), bytes.readableBytes());
+            } else {
+                gzip.write(data.getBytes());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out;
+    }
+
+    /**
+     * Closes the underlying web client, which is shared by all clients derived from the same client.
+     */
+    @Override
+    public void close() {
+        webclient.close();
+    }
+
     private String getDatabase() {
         if(this.database == null){
             throw new IllegalStateException("no database set");
@@ -78,10 +182,15 @@ public class InfluxClient {
     private Handler<AsyncResult<HttpResponse<Buffer>>> resultHandler(Handler<AsyncResult<Void>> handler) {
         return result -> {
             if(result.succeeded()){
-                if(result.result().statusCode() == 204){
+                final HttpResponse<Buffer> response = result.result();
+                if(response.statusCode() == 204){
                     handler.handle(Future.succeededFuture());
                 } else {
-                    handler.handle(Future.failedFuture(result.result().bodyAsString()));
+                    final String retryAfter = response.getHeader("Retry-After");
+                    final String message = String.valueOf(response.bodyAsString());
+                    handler.handle(Future.failedFuture(retryAfter == null
+                                                       ? new InfluxWriteException(response.statusCode(), message)
+                                                       : new RetryAfter(response.statusCode(), message, retryAfter)));
                 }
             } else {
                 handler.handle(Future.failedFuture(result.cause()));
@@ -101,13 +210,107 @@ public class InfluxClient {
     public static InfluxClient create(Vertx vertx, String host, int port) {
         final WebClient webclient = WebClient.create(vertx, new WebClientOptions().setDefaultHost(host)
                                                                                   .setDefaultPort(port));
-        return new InfluxClient(webclient);
+        return new InfluxClient(vertx, webclient);
     }
 
 
     public InfluxClient useDatabase(String db) {
-        InfluxClient client = new InfluxClient(this.webclient);
+        InfluxClient client = copy();
         client.database = db;
         return client;
     }
+
+    /**
+     * Creates a client that sends writes gzip compressed. The compression is done on a worker thread.
+     *
+     * @param level
+     *         the compression level from 1 (fastest) to 9 (best compression)
+     * @param threshold
+     *         the minimum size in bytes of the encoded measurements for a write to be compressed, smaller writes are
+     *         sent uncompressed
+     *
+     * @return a new client using the compression settings
+     */
+    public InfluxClient useCompression(int level, int threshold) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("compression level must be between 1 and 9: " + level);
+        }
+        InfluxClient client = copy();
+        client.compressionLevel = level;
+        client.compressionThreshold = threshold;
+        return client;
+    }
+
+    private InfluxClient copy() {
+        InfluxClient client = new InfluxClient(this.vertx, this.webclient);
+        client.database = this.database;
+        client.compressionLevel = this.compressionLevel;
+        client.compressionThreshold = this.compressionThreshold;
+        client.retryPolicy = this.retryPolicy;
+        client.precision = this.precision;
+        return client;
+    }
+
+    /**
+     * Creates a client that declares the precision of the written timestamps. The lines must be encoded with the
+     * same precision, see {@link LineProtocol#encoder(Precision, long)}.
+     *
+     * @param precision
+     *         the precision of the timestamps
+     *
+     * @return a new client using the precision
+     */
+    public InfluxClient usePrecision(Precision precision) {
+        InfluxClient client = copy();
+        client.precision = precision;
+        return client;
+    }
+
+    /**
+     * Creates a client that retries failed writes.
+     *
+     * @param policy
+     *         the policy that decides if and when a failed write is retried
+     *
+     * @return a new client using the retry policy
+     */
+    public InfluxClient useRetryPolicy(RetryPolicy policy) {
+        InfluxClient client = copy();
+        client.retryPolicy = policy;
+        return client;
+    }
+
+    /**
+     * Rejected write for which the server requested a delay before the next attempt
+     */
+    private static class RetryAfter extends InfluxWriteException {
+
+        private static final long serialVersionUID = 1L;
+
+        final String retryAfter;
+
+        RetryAfter(int statusCode, String message, String retryAfter) {
+            super(statusCode, message);
+            this.retryAfter = retryAfter;
+        }
+    }
+
+    private static class BufferOutputStream extends OutputStream {
+
+        private final Buffer buffer;
+
+        BufferOutputStream(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.appendByte((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.appendBytes(b, off, len);
+        }
+    }
 }
@@ -18,42 +18,215 @@
 
 package io.devcon5.digester.influx;
 
-import static org.slf4j.LoggerFactory.getLogger;
-
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
 
 import io.devcon5.measure.Digester;
 import io.devcon5.measure.Measurement;
+import io.devcon5.measure.MeasurementBatchCodec;
+import io.devcon5.metrics.Histogram;
+import io.devcon5.metrics.SelfMetrics;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import org.slf4j.Logger;
 
+/**
+ * Digester that writes measurements into an Influx DB. Received measurements are collected in batches, that are
+ * written with a single request once the batch is full or the linger time is over. See {@link MeasurementBatcher}
+ * for the batch settings.
+ * <p>
+ * Instead of a single <code>host</code> and <code>port</code>, a list of <code>endpoints</code> may be configured,
+ * each with <code>host</code>, <code>port</code> and optionally its own <code>database</code>. The series are
+ * distributed over the endpoints by consistent hashing with <code>virtualNodes</code> points per endpoint (default is
+ * 128), so adding an endpoint only moves a small share of the series. Each endpoint is written by its own
+ * {@link InfluxShard} with its own batches, write queue and spool.
+ * <p>
+ * With <code>transport</code> set to <code>udp</code>, the lines are sent to the UDP listener of Influx (default
+ * port is 8089) in datagrams of up to <code>mtu</code> bytes (default is 1400), see {@link InfluxUdpClient}. UDP
+ * gives up delivery guarantees in favor of latency, retries, compression and spooling on failed writes don't apply.
+ * <p>
+ * Timestamps are written with the <code>precision</code> <code>ns</code> (default), <code>us</code>, <code>ms</code>
+ * or <code>s</code>. With <code>alignInterval</code> set to a positive number of ms, timestamps are truncated to a
+ * multiple of that interval, typically the poll interval of the collectors. For the udp transport, the precision
+ * must match the precision of the UDP listener of Influx.
+ * <p>
+ * With <code>gzip</code> set to true, writes are sent gzip compressed. The compression level is set with
+ * <code>gzipLevel</code> (1-9, default is 6), writes smaller than <code>gzipThreshold</code> bytes (default is 1024)
+ * are sent uncompressed.
+ * <p>
+ * If a <code>spool</code> is configured, batches that could not be written are stored on disk and replayed in
+ * order once Influx is available again. While the spool is not empty, new batches are appended to the spool as
+ * well, to preserve their order. See {@link WriteAheadSpool} for the spool settings. Additionally, the spool
+ * accepts the following properties:
+ * <ul>
+ * <li>mode - <code>failed</code> to spool only batches that could not be written (default) or <code>all</code> to
+ * spool every batch before it is written</li>
+ * <li>replayInterval - the time in ms to wait before replaying the spool after a failed write, default is 10000</li>
+ * </ul>
+ * The digester can be deployed as multiple <code>instances</code>, each instance writes a distinct subset of the
+ * series, see {@link io.devcon5.digester.SeriesRouter}.
+ * <p>
+ * Failed writes are retried according to the {@link RetryPolicy}. Batches that Influx rejected as invalid are
+ * dropped instead of being spooled. Encoded batches are written through a bounded {@link WriteQueue}, see there for
+ * the queue settings.
+ * <p>
+ * The digester records the decode and encode time, the batch sizes, the write latency and errors and the state of
+ * the write queues as {@link io.devcon5.metrics.SelfMetrics}.
+ */
 public class InfluxDigester extends AbstractVerticle implements Digester {
 
-    private static final Logger LOG = getLogger(InfluxDigester.class);
-
-    private InfluxClient client;
+    private List<InfluxShard> shards;
+    private ConsistentHashRing<Integer> ring;
+    private Histogram decodeTime;
 
     @Override
-    public void start() throws Exception {
+    public void start(Future<Void> startFuture) throws Exception {
 
         final JsonObject config = config();
-        final String host = config.getString("host", "localhost");
-        final int port = config.getInteger("port", 8086);
         final String db = config.getString("database");
+        final int defaultPort = "udp".equals(config.getString("transport", "http"))
+                                ? InfluxUdpClient.DEFAULT_PORT
+                                : InfluxClient.DEFAULT_PORT;
+        final JsonArray endpoints = config.getJsonArray("endpoints",
+                new JsonArray().add(new JsonObject().put("host", config.getString("host", "localhost"))
+                                                    .put("port", config.getInteger("port", defaultPort))));
+
+        MeasurementBatchCodec.register(vertx);
+
+        this.shards = new ArrayList<>(endpoints.size());
+        for (int i = 0; i < endpoints.size(); i++) {
+            final JsonObject endpoint = endpoints.getJsonObject(i);
+            final String host = endpoint.getString("host", "localhost");
+            final int port = endpoint.getInteger("port", defaultPort);
+            final String shardDir = endpoints.size() > 1 ? host + "_" + port : null;
+            shards.add(new InfluxShard(vertx,
+                                       config,
+                                       host,
+                                       port,
+                                       endpoint.getString("database", db),
+                                       spoolConfig(config, shardDir)));
+        }
+        if (shards.size() > 1) {
+            final List<Integer> indexes = new ArrayList<>();
+            final List<String> names = new ArrayList<>();
+            for (int i = 0; i < shards.size(); i++) {
+                indexes.add(i);
+                names.add(shards.get(i).getEndpoint());
+            }
+            this.ring = new ConsistentHashRing<>(indexes, names,
+                    config.getInteger("virtualNodes", ConsistentHashRing.DEFAULT_VIRTUAL_NODES));
+        }
+
+        this.decodeTime = SelfMetrics.histogram("digester.decode",
+                "digester", "influx",
+                "instance", config.containsKey("instance") ? String.valueOf(config.getValue("instance")) : null);
+
+        forEachShard(InfluxShard::start, done -> {
+            if (done.succeeded()) {
+                subscribe();
+                startFuture.complete();
+            } else {
+                startFuture.fail(done.cause());
+            }
+        });
+    }
 
-        this.client = InfluxClient.create(vertx, host, port).useDatabase(db);
-        vertx.eventBus().consumer(DIGEST_ADDR, msg -> {
-            final Measurement[] m = decode(msg.body());
-            client.send(Arrays.asList(m), done -> {
-                if (done.succeeded()) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Stored {}", Arrays.toString(m));
-                    }
-                } else {
-                    done.cause().printStackTrace();
+    /**
+     * Runs an asynchronous operation on all shards concurrently.
+     *
+     * @param operation
+     *         the operation, such as start or stop
+     * @param handler
+     *         the handler that is notified once the operation completed on all shards, with the first failure if
+     *         the operation failed on any shard
+     */
+    private void forEachShard(BiConsumer<InfluxShard, Handler<AsyncResult<Void>>> operation,
+                              Handler<AsyncResult<Void>> handler) {
+
+        if (shards.isEmpty()) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        final int[] pending = {shards.size()};
+        final Throwable[] failure = {null};
+        for (InfluxShard shard : shards) {
+            operation.accept(shard, done -> {
+                if (done.failed() && failure[0] == null) {
+                    failure[0] = done.cause();
+                }
+                if (--pending[0] == 0) {
+                    handler.handle(failure[0] == null
+                                   ? Future.succeededFuture()
+                                   : Future.failedFuture(failure[0]));
                 }
             });
+        }
+    }
+
+    /**
+     * Determines the spool settings. Each instance of a digester with multiple instances and each shard of a digester
+     * with multiple endpoints uses its own subdirectory of the spool directory.
+     */
+    private static JsonObject spoolConfig(JsonObject config, String shardDir) {
+
+        final JsonObject spoolConfig = config.getJsonObject("spool");
+        if (spoolConfig == null || (!config.containsKey("instance") && shardDir == null)) {
+            return spoolConfig;
+        }
+        String directory = spoolConfig.getString("directory", WriteAheadSpool.DEFAULT_DIRECTORY);
+        if (config.containsKey("instance")) {
+            directory += "/" + config.getValue("instance");
+        }
+        if (shardDir != null) {
+            directory += "/" + shardDir;
+        }
+        return spoolConfig.copy().put("directory", directory);
+    }
+
+    @Override
+    public void stop(Future<Void> stopFuture) throws Exception {
+
+        forEachShard(InfluxShard::stop, stopFuture);
+    }
+
+    private void subscribe() {
+
+        vertx.eventBus().consumer(Digester.digestAddress(config()), msg -> {
+            final long start = System.nanoTime();
+            if (ring == null) {
+                final InfluxShard shard = shards.get(0);
+                decode(msg.body(), shard::append);
+                shard.flushIfFull();
+            } else {
+                distribute(msg.body());
+            }
+            decodeTime.recordSince(start);
         });
     }
+
+    /**
+     * Decodes the measurements directly into one partition per shard.
+     */
+    private void distribute(Object encoded) {
+
+        final List<List<Measurement>> partitions = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            partitions.add(new ArrayList<>());
+        }
+        decode(encoded, m -> partitions.get(shardOf(m)).add(m));
+        for (int i = 0; i < shards.size(); i++) {
+            if (!partitions.get(i).isEmpty()) {
+                shards.get(i).add(partitions.get(i));
+            }
+        }
+    }
+
+    private int shardOf(Measurement m) {
+
+        return ring.get(m.seriesKey().longHash());
+    }
 }
@@ -0,0 +1,478 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.digester.influx;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+import io.devcon5.measure.BufferEncoder;
+import io.devcon5.measure.Measurement;
+import io.devcon5.metrics.Counter;
+import io.devcon5.metrics.Histogram;
+import io.devcon5.metrics.SelfMetrics;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+
+/**
+ * Writes measurements to a single Influx endpoint. A shard has its own batcher, write queue and spool, so that a slow
+ * or unavailable endpoint does not affect the other shards of a digester. A shard is not thread-safe and must only
+ * be used from the context of the verticle that created it.
+ */
+class InfluxShard {
+
+    private static final Logger LOG = getLogger(InfluxShard.class);
+
+    private final Vertx vertx;
+    private final String endpoint;
+    private final String[] metricTags;
+    private final InfluxTransport transport;
+    private final BufferEncoder encoder;
+    private final BufferPool pool;
+    private final ParallelEncoder parallelEncoder;
+    private final MeasurementBatcher batcher;
+    private final WriteQueue queue;
+    private final JsonObject spoolConfig;
+    private final long stopTimeout;
+    private final Histogram encodeTime;
+    private final Histogram batchSize;
+    private final Histogram batchBytes;
+    private final Histogram writeLatency;
+    private final Counter writeErrors;
+
+    private WriteAheadSpool spool;
+    private boolean spoolAll;
+    private long replayInterval;
+    /**
+     * Indicates the spool may contain records that have not been replayed
+     */
+    private boolean spoolPending;
+    private int spoolAppends;
+    /**
+     * Average size of an encoded line in the last batch, used to size the buffer of the next batch
+     */
+    private int bytesPerLine = 128;
+    private boolean replaying;
+    private long replayTimer = -1;
+    private boolean stopped;
+    /**
+     * Encoded batches in the order they were flushed. Batches are only queued for writing once all batches flushed
+     * before them are encoded, so a batch encoded inline does not overtake a batch encoded in parallel.
+     */
+    private final Deque<EncodedBatch> encoding = new ArrayDeque<>();
+    private Handler<Void> encodedHandler;
+
+    /**
+     * Creates a shard.
+     *
+     * @param vertx
+     *         the vertx instance of the digester
+     * @param config
+     *         the digester configuration with the batch, queue, retry and compression settings
+     * @param host
+     *         the host of the Influx endpoint
+     * @param port
+     *         the port of the Influx endpoint
+     * @param database
+     *         the database to write to, not used by the udp transport
+     * @param spoolConfig
+     *         the spool settings of this shard, <code>null</code> if no spool is used
+     */
+    InfluxShard(Vertx vertx, JsonObject config, String host, int port, String database, JsonObject spoolConfig) {
+
+        this.vertx = vertx;
+        this.endpoint = host + ":" + port;
+        final Precision precision = Precision.of(config.getString("precision", "ns"));
+        this.transport = createTransport(vertx, config, host, port, database, precision);
+        this.encoder = LineProtocol.encoder(precision, config.getLong("alignInterval", 0L) * 1_000_000L);
+        this.batcher = MeasurementBatcher.create(vertx, config, this::write);
+        this.queue = WriteQueue.create(config, this::send, spoolConfig == null ? null : (lines, points, done) -> {
+            LOG.warn("Write queue of {} is full, spooling {} measurements", endpoint, points);
+            toSpool(lines);
+        });
+        this.pool = config.getBoolean("pooledBuffers", true) ? new BufferPool() : null;
+        this.parallelEncoder = ParallelEncoder.create(vertx, config, encoder);
+        queue.dropHandler(this::release);
+        this.spoolConfig = spoolConfig;
+        this.stopTimeout = config.getLong("stopTimeout", 10000L);
+        this.metricTags = new String[] {"endpoint", endpoint,
+                                        "database", database,
+                                        "instance", config.containsKey("instance")
+                                                    ? String.valueOf(config.getValue("instance"))
+                                                    : null};
+        this.encodeTime = SelfMetrics.histogram("influx.encode", metricTags);
+        this.batchSize = SelfMetrics.histogram("influx.batchSize", metricTags);
+        this.batchBytes = SelfMetrics.histogram("influx.batchBytes", metricTags);
+        this.writeLatency = SelfMetrics.histogram("influx.write", metricTags);
+        this.writeErrors = SelfMetrics.counter("influx.writeErrors", metricTags);
+        SelfMetrics.register("influx.writeQueue", queue, metricTags);
+    }
+
+    private static InfluxTransport createTransport(Vertx vertx,
+                                                  JsonObject config,
+                                                  String host,
+                                                  int port,
+                                                  String database,
+                                                  Precision precision) {
+
+        if ("udp".equals(config.getString("transport", "http"))) {
+            return InfluxUdpClient.create(vertx, host, port, config.getInteger("mtu", InfluxUdpClient.DEFAULT_MTU));
+        }
+        InfluxClient influx = InfluxClient.create(vertx, host, port)
+                                          .useDatabase(database)
+                                          .usePrecision(precision)
+                                          .useRetryPolicy(RetryPolicy.create(config));
+        if (config.getBoolean("gzip", false)) {
+            influx = influx.useCompression(config.getInteger("gzipLevel", 6), config.getInteger("gzipThreshold", 1024));
+        }
+        return influx;
+    }
+
+    /**
+     * Opens the spool, if one is configured, and starts replaying it.
+     *
+     * @param handler
+     *         the handler that is notified when the shard is ready
+     */
+    void start(Handler<AsyncResult<Void>> handler) {
+
+        if (spoolConfig == null) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        this.spoolAll = "all".equals(spoolConfig.getString("mode", "failed"));
+        this.replayInterval = spoolConfig.getLong("replayInterval", 10000L);
+
+        vertx.<WriteAheadSpool>executeBlocking(f -> f.complete(WriteAheadSpool.create(vertx, spoolConfig)), spooled -> {
+            if (spooled.succeeded()) {
+                this.spool = spooled.result();
+                this.spoolPending = true;
+                replay();
+                handler.handle(Future.succeededFuture());
+            } else {
+                handler.handle(Future.failedFuture(spooled.cause()));
+            }
+        });
+    }
+
+    /**
+     * Flushes the pending batch and waits until all queued batches are written before the transport and the spool
+     * are closed. Batches that are not written within the stop timeout are spooled, or dropped if there is no spool.
+     *
+     * @param handler
+     *         the handler that is notified when the shard is stopped
+     */
+    void stop(Handler<AsyncResult<Void>> handler) {
+
+        SelfMetrics.unregister("influx.writeQueue", metricTags);
+        //the remaining batch is encoded inline and queued after the batches that are still encoded in parallel
+        stopped = true;
+        batcher.flush();
+        if (replayTimer != -1) {
+            vertx.cancelTimer(replayTimer);
+            replayTimer = -1;
+        }
+        final long timeout = vertx.setTimer(stopTimeout, id -> {
+            encodedHandler = null;
+            for (EncodedBatch batch : encoding) {
+                if (batch.lines != null) {
+                    release(batch.lines);
+                }
+            }
+            encoding.clear();
+            final int evicted = queue.evict((lines, points, done) -> {
+                if (spool != null) {
+                    toSpool(lines);
+                } else {
+                    release(lines);
+                }
+            });
+            LOG.warn("Could not write all batches to {} within {} ms, {} {} batches",
+                     endpoint,
+                     stopTimeout,
+                     spool != null ? "spooled" : "dropped",
+                     evicted);
+            close(handler);
+        });
+        final Handler<Void> drain = encoded -> queue.drain(drained -> {
+            if (vertx.cancelTimer(timeout)) {
+                close(handler);
+            }
+        });
+        if (encoding.isEmpty()) {
+            drain.handle(null);
+        } else {
+            encodedHandler = drain;
+        }
+    }
+
+    /**
+     * Closes the transport and the spool. Writes that are still in flight fail and release their buffers, so the
+     * pool is only cleared if nothing is in flight anymore.
+     */
+    private void close(Handler<AsyncResult<Void>> handler) {
+
+        transport.close();
+        if (parallelEncoder != null) {
+            parallelEncoder.close();
+        }
+        if (pool != null && queue.inFlight() == 0) {
+            pool.releaseAll();
+        }
+        if (spool == null) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        //spool operations are executed in order, so the spool is closed after the pending appends
+        spool.close(closed -> {
+            if (closed.failed()) {
+                LOG.error("Could not close spool of {}", endpoint, closed.cause());
+            }
+            handler.handle(closed);
+        });
+    }
+
+    /**
+     * @return the host and port of the Influx endpoint
+     */
+    String getEndpoint() {
+
+        return endpoint;
+    }
+
+    /**
+     * Adds measurements to the batch of this shard.
+     *
+     * @param measurements
+     *         the measurements to write
+     */
+    void add(Collection<Measurement> measurements) {
+
+        batcher.add(measurements);
+    }
+
+    /**
+     * Adds a single measurement of a message to the batch, the batch is not flushed before {@link #flushIfFull()}
+     * is called.
+     *
+     * @param m
+     *         the measurement to write
+     */
+    void append(Measurement m) {
+
+        batcher.append(m);
+    }
+
+    /**
+     * Flushes the batch if it is full, called after all measurements of a message are appended.
+     */
+    void flushIfFull() {
+
+        batcher.flushIfFull();
+    }
+
+    private void write(List<Measurement> batch) {
+
+        final long start = System.nanoTime();
+        if (parallelEncoder != null && !stopped && parallelEncoder.isParallel(batch.size())) {
+            final EncodedBatch pending = new EncodedBatch(batch.size());
+            encoding.addLast(pending);
+            parallelEncoder.encode(batch, encoded -> {
+                encodeTime.recordSince(start);
+                if (encoded.succeeded()) {
+                    pending.lines = encoded.result();
+                } else {
+                    LOG.error("Could not encode batch of {} measurements for {}",
+                              batch.size(),
+                              endpoint,
+                              encoded.cause());
+                }
+                pending.done = true;
+                enqueueEncoded();
+            });
+            return;
+        }
+        final Buffer lines = pool == null
+                             ? encoder.encode(batch)
+                             : encoder.encodeTo(batch, pool.lease(batch.size() * bytesPerLine));
+        encodeTime.recordSince(start);
+        if (!batch.isEmpty()) {
+            bytesPerLine = Math.max(lines.length() / batch.size(), 16);
+        }
+        if (encoding.isEmpty()) {
+            enqueue(lines, batch.size());
+        } else {
+            final EncodedBatch encoded = new EncodedBatch(batch.size());
+            encoded.lines = lines;
+            encoded.done = true;
+            encoding.addLast(encoded);
+        }
+    }
+
+    /**
+     * Queues the encoded batches in the order they were flushed, up to the first batch that is still encoded.
+     */
+    private void enqueueEncoded() {
+
+        while (!encoding.isEmpty() && encoding.peekFirst().done) {
+            final EncodedBatch batch = encoding.pollFirst();
+            if (batch.lines != null) {
+                enqueue(batch.lines, batch.points);
+            }
+        }
+        if (encoding.isEmpty() && encodedHandler != null) {
+            final Handler<Void> encoded = encodedHandler;
+            encodedHandler = null;
+            encoded.handle(null);
+        }
+    }
+
+    private void enqueue(Buffer lines, int points) {
+
+        batchSize.record(points);
+        batchBytes.record(lines.length());
+
+        if (spool != null && (spoolAll || spoolPending)) {
+            toSpool(lines);
+            return;
+        }
+        queue.add(lines, points);
+    }
+
+    private void send(Buffer lines, int points, Handler<Void> completion) {
+
+        final long start = System.nanoTime();
+        transport.write(lines, done -> {
+            writeLatency.recordSince(start);
+            if (done.failed()) {
+                writeErrors.increment();
+            }
+            if (done.succeeded()) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Stored {} measurements in {}", points, endpoint);
+                }
+            } else if (spool != null && RetryPolicy.isRetryable(done.cause())) {
+                LOG.warn("Could not store {} measurements in {}, spooling batch", points, endpoint, done.cause());
+                toSpool(lines);
+            } else {
+                LOG.error("Could not store {} measurements in {}", points, endpoint, done.cause());
+            }
+            release(lines);
+            completion.handle(null);
+        });
+    }
+
+    private void toSpool(Buffer lines) {
+
+        spoolPending = true;
+        spoolAppends++;
+        spool.append(lines, done -> {
+            spoolAppends--;
+            release(lines);
+            if (done.failed()) {
+                LOG.error("Could not spool batch of {} bytes", lines.length(), done.cause());
+            }
+            replay();
+        });
+    }
+
+    /**
+     * Returns the buffer of a batch to the pool once the batch is written, spooled or dropped.
+     *
+     * @param lines
+     *         the encoded batch
+     */
+    private void release(Buffer lines) {
+
+        if (pool != null) {
+            pool.release(lines);
+        }
+    }
+
+    /**
+     * Writes the records of the spool in order, one at a time, until the spool is empty or a write failed.
+     */
+    private void replay() {
+
+        if (replaying || !spoolPending || stopped) {
+            return;
+        }
+        replaying = true;
+        spool.peek(peeked -> {
+            if (peeked.failed()) {
+                LOG.error("Could not read spool", peeked.cause());
+                replaying = false;
+                scheduleReplay();
+            } else if (peeked.result() == null) {
+                replaying = false;
+                spoolPending = spoolAppends > 0;
+            } else {
+                final WriteAheadSpool.Record record = peeked.result();
+                transport.write(record.data, done -> {
+                    if (done.succeeded() || !RetryPolicy.isRetryable(done.cause())) {
+                        if (done.failed()) {
+                            LOG.error("Dropping spooled batch rejected by {}", endpoint, done.cause());
+                        }
+                        spool.remove(record, removed -> {
+                            replaying = false;
+                            replay();
+                        });
+                    } else {
+                        LOG.debug("Replaying spool to {} failed", endpoint, done.cause());
+                        replaying = false;
+                        scheduleReplay();
+                    }
+                });
+            }
+        });
+    }
+
+    private void scheduleReplay() {
+
+        if (replayTimer == -1 && !stopped) {
+            replayTimer = vertx.setTimer(replayInterval, id -> {
+                replayTimer = -1;
+                replay();
+            });
+        }
+    }
+
+    /**
+     * A flushed batch waiting for its turn to be queued, the lines are <code>null</code> until the batch is encoded
+     * or if it could not be encoded.
+     */
+    private static class EncodedBatch {
+
+        final int points;
+        Buffer lines;
+        boolean done;
+
+        EncodedBatch(int points) {
+
+            this.points = points;
+        }
+    }
+}
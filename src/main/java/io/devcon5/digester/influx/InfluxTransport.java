@@ -0,0 +1,45 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.digester.influx;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Transport that delivers measurements encoded in line protocol to Influx.
+ */
+public interface InfluxTransport {
+
+    /**
+     * Writes measurements that are already encoded in line protocol.
+     *
+     * @param lines
+     *         the encoded measurements, one per line
+     * @param handler
+     *         the handler that is notified when the write completed
+     *
+     * @return this transport
+     */
+    InfluxTransport write(Buffer lines, Handler<AsyncResult<Void>> handler);
+
+    /**
+     * Releases the resources of the transport.
+     */
+    void close();
+}
@@ -0,0 +1,130 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.digester.influx;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.datagram.DatagramSocket;
+import io.vertx.core.datagram.DatagramSocketOptions;
+
+/**
+ * Writes line protocol to the UDP listener of Influx. Lines are packed into datagrams of up to the configured MTU
+ * without splitting a line, a line longer than the MTU is sent in a datagram of its own. UDP does not confirm the
+ * delivery, a write only fails if the datagrams could not be sent. The database is configured at the UDP listener
+ * of Influx.
+ */
+public class InfluxUdpClient implements InfluxTransport {
+
+    public static final int DEFAULT_PORT = 8089;
+    public static final int DEFAULT_MTU = 1400;
+
+    private final DatagramSocket socket;
+    private final String host;
+    private final int port;
+    private final int mtu;
+
+    InfluxUdpClient(DatagramSocket socket, String host, int port, int mtu) {
+
+        if (mtu < 1) {
+            throw new IllegalArgumentException("mtu must be positive: " + mtu);
+        }
+        this.socket = socket;
+        this.host = host;
+        this.port = port;
+        this.mtu = mtu;
+    }
+
+    public static InfluxUdpClient create(Vertx vertx, String host, int port, int mtu) {
+
+        return new InfluxUdpClient(vertx.createDatagramSocket(new DatagramSocketOptions()), host, port, mtu);
+    }
+
+    @Override
+    public InfluxUdpClient write(Buffer lines, Handler<AsyncResult<Void>> handler) {
+
+        final ByteBuf bytes = lines.getByteBuf();
+        final int length = lines.length();
+        final Completion completion = new Completion(handler);
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length) {
+                final int lineFeed = bytes.indexOf(end, length, (byte) '\n');
+                final int lineEnd = lineFeed < 0 ? length : lineFeed + 1;
+                if (lineEnd - start > mtu && end > start) {
+                    break;
+                }
+                end = lineEnd;
+            }
+            completion.pending++;
+            socket.send(lines.slice(start, end), port, host, completion);
+            start = end;
+        }
+        completion.sent();
+        return this;
+    }
+
+    @Override
+    public void close() {
+
+        socket.close();
+    }
+
+    /**
+     * Notifies the write handler once all datagrams of a write are sent
+     */
+    private static class Completion implements Handler<AsyncResult<DatagramSocket>> {
+
+        private final Handler<AsyncResult<Void>> handler;
+        private int pending;
+        private boolean allSent;
+        private Throwable failure;
+
+        Completion(Handler<AsyncResult<Void>> handler) {
+
+            this.handler = handler;
+        }
+
+        @Override
+        public void handle(AsyncResult<DatagramSocket> result) {
+
+            pending--;
+            if (result.failed() && failure == null) {
+                failure = result.cause();
+            }
+            complete();
+        }
+
+        void sent() {
+
+            allSent = true;
+            complete();
+        }
+
+        private void complete() {
+
+            if (allSent && pending == 0) {
+                handler.handle(failure == null ? Future.succeededFuture() : Future.failedFuture(failure));
+            }
+        }
+    }
+}
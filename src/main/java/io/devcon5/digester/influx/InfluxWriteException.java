@@ -0,0 +1,54 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.digester.influx;
+
+/**
+ * Indicates that Influx rejected a write request. Rejections due to invalid data, like a partial write, are not
+ * retryable as the same request would be rejected again.
+ */
+public class InfluxWriteException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public InfluxWriteException(int statusCode, String message) {
+
+        super(statusCode + " " + message);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * @return the http status code of the response
+     */
+    public int getStatusCode() {
+
+        return statusCode;
+    }
+
+    /**
+     * A write is retryable if the server was overloaded or unavailable. Client errors, such as invalid line
+     * protocol, a missing database or missing permissions, are not.
+     *
+     * @return <code>true</code> if the write may succeed when sent again
+     */
+    public boolean isRetryable() {
+
+        return statusCode == 429 || statusCode == 408 || statusCode >= 500;
+    }
+}
@@ -19,63 +19,135 @@
 package io.devcon5.digester.influx;
 
 import java.util.Collection;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collector;
 
-import io.devcon5.measure.Encoder;
+import io.devcon5.measure.BufferEncoder;
 import io.devcon5.measure.Measurement;
+import io.devcon5.measure.ValueType;
 import io.vertx.core.buffer.Buffer;
 
 public class LineProtocol {
 
-    public static Encoder<Buffer> encoder() {
+    public static BufferEncoder encoder() {
 
-        return new LineProtocolEncoder();
+        return new LineProtocolEncoder(Precision.NANOSECONDS, 0);
     }
 
-    private static class LineProtocolEncoder implements Encoder<Buffer> {
+    /**
+     * Creates an encoder that writes timestamps with the given precision.
+     *
+     * @param precision
+     *         the precision the timestamps are truncated to
+     * @param alignNanos
+     *         if positive, timestamps are truncated to a multiple of this interval in ns, so that measurements of
+     *         the same poll cycle share the same timestamp
+     *
+     * @return the encoder
+     */
+    public static BufferEncoder encoder(Precision precision, long alignNanos) {
+
+        if (alignNanos < 0) {
+            throw new IllegalArgumentException("alignment must not be negative: " + alignNanos);
+        }
+        return new LineProtocolEncoder(precision, alignNanos);
+    }
+
+    /**
+     * Estimates the number of bytes the measurement occupies when encoded in line protocol. The estimate does not
+     * encode anything and is cheap enough to be used for every point that is added to a batch.
+     *
+     * @param m
+     *         the measurement to estimate
+     *
+     * @return the estimated size in bytes
+     */
+    public static int estimateSize(Measurement m) {
+
+        //series, separators, timestamp and line feed
+        int size = LineWriter.series(m.seriesKey()).length + 22;
+        for (int i = 0, count = m.valueCount(); i < count; i++) {
+            size += m.getValueName(i).length() + 2;
+            size += m.getValueType(i) == ValueType.STRING ? ((String) m.getValue(i)).length() + 2 : 12;
+        }
+        return size;
+    }
+
+    private static class LineProtocolEncoder implements BufferEncoder {
+
+        private final Precision precision;
+        private final long alignNanos;
+
+        LineProtocolEncoder(Precision precision, long alignNanos) {
+
+            this.precision = precision;
+            this.alignNanos = alignNanos;
+        }
+
+        private long timestamp(long nanos) {
+
+            return precision.convert(alignNanos > 0 ? nanos - nanos % alignNanos : nanos);
+        }
 
         @Override
         public Buffer encode(final Collection<Measurement> measurements) {
 
-            final int initialSize = 128 * measurements.size();
-            return measurements.stream()
-                               .collect(Collector.of(() -> Buffer.buffer(initialSize),
-                                       this::appendMeasurement,
-                                       Buffer::appendBuffer));
+            int size = 0;
+            for (Measurement m : measurements) {
+                size += estimateSize(m);
+            }
+            final LineWriter out = new LineWriter(size);
+            for (Measurement m : measurements) {
+                appendMeasurement(out, m);
+            }
+            return out.toBuffer();
         }
 
-        private Buffer appendMeasurement(Buffer buf, Measurement m) {
+        @Override
+        public Buffer encodeTo(final Collection<Measurement> measurements, final Buffer target) {
 
-            buf.appendString(m.getName());
-            m.getTags()
-             .forEach((k, v) -> buf.appendString(",")
-                                   .appendString(k)
-                                   .appendString("=")
-                                   .appendString(v.replaceAll("\\s", "\\\\ ")));
-            buf.appendString(" ");
+            final LineWriter out = new LineWriter(target);
+            for (Measurement m : measurements) {
+                appendMeasurement(out, m);
+            }
+            return out.toBuffer();
+        }
 
-            final AtomicBoolean firstValue = new AtomicBoolean(true);
-            m.getValues().forEach((k, v) -> {
-                if (!firstValue.compareAndSet(true, false)) {
-                    buf.appendString(",");
-                }
-                buf.appendString(k).appendString("=");
+        private void appendMeasurement(LineWriter out, Measurement m) {
 
-                if (v instanceof String) {
-                    buf.appendString("\"");
+            out.write(LineWriter.series(m.seriesKey())).write(' ');
+            for (int i = 0, count = m.valueCount(); i < count; i++) {
+                if (i > 0) {
+                    out.write(',');
                 }
-                buf.appendString(String.valueOf(v));
-                if (v instanceof Integer || v instanceof Long) {
-                    buf.appendString("i");
-                } else if (v instanceof String) {
-                    buf.appendString("\"");
+                out.write(m.getValueName(i), LineWriter.KEY).write('=');
+                final ValueType type = m.getValueType(i);
+                if (type == ValueType.STRING) {
+                    out.write('"').write((String) m.getValue(i), LineWriter.STRING).write('"');
+                } else {
+                    appendValue(out, type, m.getRawValue(i));
                 }
-            });
-            buf.appendString(" ");
-            buf.appendString(String.valueOf(m.getTimestamp()));
-            buf.appendString("\n");
-            return buf;
+            }
+            out.write(' ').write(timestamp(m.getTimestamp())).write('\n');
+        }
+
+        private void appendValue(LineWriter out, ValueType type, long raw) {
+
+            switch (type) {
+                case INTEGER:
+                case LONG:
+                    out.write(raw).write('i');
+                    break;
+                case FLOAT:
+                    out.write(Float.intBitsToFloat((int) raw));
+                    break;
+                case DOUBLE:
+                    out.write(Double.longBitsToDouble(raw));
+                    break;
+                case BOOLEAN:
+                    out.write(raw != 0);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported value type " + type);
+            }
         }
     }
 
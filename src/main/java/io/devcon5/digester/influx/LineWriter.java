@@ -0,0 +1,385 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.influx;
+
+import java.util.Arrays;
+
+import io.devcon5.measure.SeriesKey;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Writes line protocol elements as bytes directly into the backing array of a heap buffer. Escaping is done with a
+ * lookup table and numbers are formatted digit by digit, so writing a line does not create any intermediate
+ * objects. A writer is not thread-safe and is used for a single encoding run.
+ * <p>
+ * A writer that appends to a given buffer, which may be a direct buffer, writes into a per-thread chunk that is
+ * appended to the target buffer whenever it is full and when the writer is finished.
+ * <p>
+ * Other line based protocols, such as the plaintext protocol of Graphite, use the writer for raw bytes and numbers.
+ */
+public class LineWriter {
+
+    /**
+     * Escape commas and spaces, used for measurement names
+     */
+    static final int NAME = 0x01;
+    /**
+     * Escape commas, equal signs and spaces, used for tag keys, tag values and field keys
+     */
+    static final int KEY = 0x02;
+    /**
+     * Escape double quotes and backslashes, used for string field values
+     */
+    static final int STRING = 0x04;
+    /**
+     * Line breaks and tabs are not allowed in names and keys and are replaced by an escaped space
+     */
+    private static final int REPLACE = 0x08;
+
+    private static final byte[] ESCAPE = new byte[128];
+
+    static {
+        ESCAPE[','] = NAME | KEY;
+        ESCAPE[' '] = NAME | KEY;
+        ESCAPE['='] = KEY;
+        ESCAPE['"'] = STRING;
+        ESCAPE['\\'] = STRING;
+        ESCAPE['\t'] = REPLACE;
+        ESCAPE['\n'] = REPLACE;
+        ESCAPE[0x0b] = REPLACE;
+        ESCAPE['\f'] = REPLACE;
+        ESCAPE['\r'] = REPLACE;
+    }
+
+    /**
+     * The escaped series part of a line, <code>name,tag1=value1,tag2=value2</code>
+     */
+    private static final SeriesKey.Encoding SERIES = SeriesKey.Encoding.of(key -> {
+        final LineWriter out = new LineWriter(64).write(key.getName(), NAME);
+        for (int i = 0; i < key.tagCount(); i++) {
+            out.write(',').write(key.getTagKey(i), KEY).write('=').write(key.getTagValue(i), KEY);
+        }
+        return out.toBytes();
+    });
+
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+
+    private static final double[] POW10 = new double[18];
+    private static final long[] LONG_POW10 = new long[18];
+
+    static {
+        long p = 1;
+        for (int i = 0; i < POW10.length; i++) {
+            LONG_POW10[i] = p;
+            POW10[i] = p;
+            p *= 10;
+        }
+    }
+
+    /**
+     * Largest integer up to which all integers are exactly representable as double
+     */
+    private static final double MAX_EXACT = 9007199254740992D;
+
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    private static final ThreadLocal<byte[]> CHUNK = ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+
+    /**
+     * The heap buffer that is written to directly, <code>null</code> if the writer appends chunks to a target
+     */
+    private final ByteBuf buffer;
+    private final Buffer target;
+    private byte[] bytes;
+    private int pos;
+
+    /**
+     * Creates a writer that writes into a new heap buffer.
+     *
+     * @param initialSize
+     *         the initial capacity of the buffer, it is extended as needed
+     */
+    public LineWriter(int initialSize) {
+
+        this.buffer = Unpooled.buffer(Math.max(initialSize, 64));
+        this.target = null;
+        this.bytes = buffer.array();
+        this.pos = buffer.arrayOffset();
+    }
+
+    /**
+     * Creates a writer that appends to a buffer.
+     *
+     * @param target
+     *         the buffer to append to
+     */
+    public LineWriter(Buffer target) {
+
+        this.buffer = null;
+        this.target = target;
+        this.bytes = CHUNK.get();
+        this.pos = 0;
+    }
+
+    /**
+     * Completes the encoding run.
+     *
+     * @return a buffer containing all written bytes, or the target buffer with all bytes appended
+     */
+    public Buffer toBuffer() {
+
+        if (target != null) {
+            target.appendBytes(bytes, 0, pos);
+            pos = 0;
+            return target;
+        }
+        buffer.writerIndex(pos - buffer.arrayOffset());
+        return Buffer.buffer(buffer);
+    }
+
+    /**
+     * @return a copy of the written bytes, only supported by writers that do not append to a target
+     */
+    private byte[] toBytes() {
+
+        return Arrays.copyOfRange(bytes, buffer.arrayOffset(), pos);
+    }
+
+    /**
+     * Returns the escaped series part of a line, which is encoded once per series key.
+     *
+     * @param key
+     *         the series key
+     *
+     * @return the UTF-8 encoded series, must not be modified
+     */
+    static byte[] series(SeriesKey key) {
+
+        return key.encoded(SERIES);
+    }
+
+    private void ensure(int length) {
+
+        if (target != null) {
+            if (bytes.length - pos < length) {
+                target.appendBytes(bytes, 0, pos);
+                pos = 0;
+                if (bytes.length < length) {
+                    //chunks larger than the default are not kept for the thread
+                    bytes = new byte[length];
+                }
+            }
+            return;
+        }
+        final int written = pos - buffer.arrayOffset();
+        if (buffer.capacity() - written < length) {
+            buffer.writerIndex(written);
+            buffer.ensureWritable(length);
+            bytes = buffer.array();
+            pos = buffer.arrayOffset() + written;
+        }
+    }
+
+    public LineWriter write(char c) {
+
+        ensure(1);
+        bytes[pos++] = (byte) c;
+        return this;
+    }
+
+    public LineWriter write(byte[] data) {
+
+        ensure(data.length);
+        System.arraycopy(data, 0, bytes, pos, data.length);
+        pos += data.length;
+        return this;
+    }
+
+    /**
+     * Writes the string UTF-8 encoded, escaping all characters that are flagged for the given context.
+     *
+     * @param s
+     *         the string to write
+     * @param context
+     *         one of {@link #NAME}, {@link #KEY} or {@link #STRING}
+     *
+     * @return this writer
+     */
+    LineWriter write(String s, int context) {
+
+        final int len = s.length();
+        //escaped ascii takes 2 bytes, other chars at most 3 bytes
+        ensure(len * 3);
+        final byte[] b = bytes;
+        int p = pos;
+        final int replace = context == STRING ? 0 : REPLACE;
+        for (int i = 0; i < len; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                final int flags = ESCAPE[c];
+                if ((flags & context) != 0) {
+                    b[p++] = '\\';
+                    b[p++] = (byte) c;
+                } else if ((flags & replace) != 0) {
+                    b[p++] = '\\';
+                    b[p++] = ' ';
+                } else {
+                    b[p++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xc0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[p++] = (byte) (0xf0 | (cp >> 18));
+                b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                b[p++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                b[p++] = '?';
+            } else {
+                b[p++] = (byte) (0xe0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                b[p++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        pos = p;
+        return this;
+    }
+
+    LineWriter write(boolean value) {
+
+        return write(value ? TRUE : FALSE);
+    }
+
+    /**
+     * Writes the decimal digits of the value.
+     *
+     * @param value
+     *         the value to write
+     *
+     * @return this writer
+     */
+    public LineWriter write(long value) {
+
+        ensure(20);
+        //digits are calculated on the negative value, as it covers Long.MIN_VALUE
+        long v = value;
+        if (v < 0) {
+            bytes[pos++] = '-';
+        } else {
+            v = -v;
+        }
+        int digits = 1;
+        for (long t = v / 10; t != 0; t /= 10) {
+            digits++;
+        }
+        int p = pos + digits;
+        pos = p;
+        do {
+            bytes[--p] = (byte) ('0' - (v % 10));
+            v /= 10;
+        } while (v != 0);
+        return this;
+    }
+
+    /**
+     * Writes the shortest decimal with up to 17 fraction digits that parses back to the same double. Values that are
+     * too large or too small for that are written in their {@link Double#toString(double)} representation.
+     *
+     * @param value
+     *         the value to write
+     *
+     * @return this writer
+     */
+    public LineWriter write(double value) {
+
+        final double abs = Math.abs(value);
+        for (int scale = 0; scale < POW10.length; scale++) {
+            final double scaled = abs * POW10[scale];
+            if (scaled >= MAX_EXACT) {
+                break;
+            }
+            final long l = Math.round(scaled);
+            if (l / POW10[scale] == abs) {
+                return writeDecimal(value < 0 ? -l : l, scale);
+            }
+        }
+        return writeAscii(Double.toString(value));
+    }
+
+    /**
+     * Writes the shortest decimal that parses back to the same float, see {@link #write(double)}.
+     *
+     * @param value
+     *         the value to write
+     *
+     * @return this writer
+     */
+    public LineWriter write(float value) {
+
+        final double abs = Math.abs((double) value);
+        final float absf = Math.abs(value);
+        for (int scale = 0; scale < POW10.length; scale++) {
+            final double scaled = abs * POW10[scale];
+            if (scaled >= MAX_EXACT) {
+                break;
+            }
+            final long l = Math.round(scaled);
+            if ((float) (l / POW10[scale]) == absf) {
+                return writeDecimal(value < 0 ? -l : l, scale);
+            }
+        }
+        return writeAscii(Float.toString(value));
+    }
+
+    private LineWriter writeDecimal(long unscaled, int scale) {
+
+        if (scale == 0) {
+            return write(unscaled);
+        }
+        if (unscaled < 0) {
+            write('-');
+            unscaled = -unscaled;
+        }
+        write(unscaled / LONG_POW10[scale]);
+        ensure(scale + 1);
+        bytes[pos++] = '.';
+        long fraction = unscaled % LONG_POW10[scale];
+        for (int p = pos + scale - 1; p >= pos; p--) {
+            bytes[p] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        pos += scale;
+        return this;
+    }
+
+    private LineWriter writeAscii(String s) {
+
+        final int len = s.length();
+        ensure(len);
+        for (int i = 0; i < len; i++) {
+            bytes[pos++] = (byte) s.charAt(i);
+        }
+        return this;
+    }
+}
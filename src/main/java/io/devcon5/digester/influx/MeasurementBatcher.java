@@ -0,0 +1,171 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.influx;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import io.devcon5.measure.Measurement;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Collects measurements and hands them over as a single batch once either the number of points, the estimated
+ * size of the encoded batch or the linger time is reached. The batcher is not thread-safe and must only be used
+ * from the context of the verticle that created it.
+ * <p>
+ * The batcher is configured with the following properties of the digester configuration:
+ * <ul>
+ * <li>batchSize - the max number of points per batch, default is 1, meaning every received message is flushed
+ * immediately</li>
+ * <li>batchBytes - the max estimated size of the encoded batch in bytes, default is 1 MB</li>
+ * <li>batchLinger - the max time in ms a point is held back before the batch is flushed, default is 1000 ms. It
+ * must be positive if the batch size is greater than 1, otherwise a partial batch would never be flushed</li>
+ * </ul>
+ */
+class MeasurementBatcher {
+
+    public static final int DEFAULT_BATCH_SIZE = 1;
+    public static final int DEFAULT_BATCH_BYTES = 1024 * 1024;
+    public static final long DEFAULT_BATCH_LINGER = 1000L;
+
+    private final Vertx vertx;
+    private final int maxPoints;
+    private final int maxBytes;
+    private final long lingerMs;
+    private final Handler<List<Measurement>> flushHandler;
+
+    private List<Measurement> pending;
+    private int pendingBytes;
+    private long lingerTimer = -1;
+
+    MeasurementBatcher(Vertx vertx, int maxPoints, int maxBytes, long lingerMs, Handler<List<Measurement>> flushHandler) {
+
+        if (maxPoints < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + maxPoints);
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("batchBytes must be positive: " + maxBytes);
+        }
+        if (maxPoints > 1 && lingerMs <= 0) {
+            throw new IllegalArgumentException("batchLinger must be positive for a batchSize of " + maxPoints);
+        }
+        this.vertx = vertx;
+        this.maxPoints = maxPoints;
+        this.maxBytes = maxBytes;
+        this.lingerMs = lingerMs;
+        this.flushHandler = flushHandler;
+        this.pending = new ArrayList<>(Math.min(maxPoints, 1024));
+    }
+
+    /**
+     * Creates a batcher from the batch settings of a digester configuration.
+     *
+     * @param vertx
+     *         the vertx instance to schedule the linger timer
+     * @param config
+     *         the configuration of the digester
+     * @param flushHandler
+     *         the handler that receives every flushed batch
+     *
+     * @return a new batcher
+     */
+    static MeasurementBatcher create(Vertx vertx, JsonObject config, Handler<List<Measurement>> flushHandler) {
+
+        return new MeasurementBatcher(vertx,
+                config.getInteger("batchSize", DEFAULT_BATCH_SIZE),
+                config.getInteger("batchBytes", DEFAULT_BATCH_BYTES),
+                config.getLong("batchLinger", DEFAULT_BATCH_LINGER),
+                flushHandler);
+    }
+
+    /**
+     * Adds all measurements to the pending batch. The measurements of one collection are always kept in the same
+     * batch, so a batch may exceed the batch size by the size of the added collection.
+     *
+     * @param measurements
+     *         the measurements to add
+     */
+    public void add(Collection<Measurement> measurements) {
+
+        for (Measurement m : measurements) {
+            append(m);
+        }
+        flushIfFull();
+    }
+
+    public void add(Measurement m) {
+
+        append(m);
+        flushIfFull();
+    }
+
+    /**
+     * Adds a measurement without flushing, used to add the measurements of a message one by one while they are
+     * decoded. {@link #flushIfFull()} has to be called once the message is complete.
+     *
+     * @param m
+     *         the measurement to add
+     */
+    void append(Measurement m) {
+
+        pending.add(m);
+        pendingBytes += LineProtocol.estimateSize(m);
+    }
+
+    /**
+     * Flushes the batch if it is full, otherwise starts the linger timer.
+     */
+    void flushIfFull() {
+
+        if (pending.size() >= maxPoints || pendingBytes >= maxBytes) {
+            flush();
+        } else if (lingerTimer == -1 && lingerMs > 0 && !pending.isEmpty()) {
+            lingerTimer = vertx.setTimer(lingerMs, id -> {
+                lingerTimer = -1;
+                flush();
+            });
+        }
+    }
+
+    /**
+     * Hands the pending measurements to the flush handler, if there are any.
+     */
+    public void flush() {
+
+        if (lingerTimer != -1) {
+            vertx.cancelTimer(lingerTimer);
+            lingerTimer = -1;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        final List<Measurement> batch = pending;
+        this.pending = new ArrayList<>(Math.min(maxPoints, Math.max(batch.size(), 16)));
+        this.pendingBytes = 0;
+        flushHandler.handle(batch);
+    }
+
+    public int size() {
+
+        return pending.size();
+    }
+}
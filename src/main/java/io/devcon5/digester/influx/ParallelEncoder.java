@@ -0,0 +1,164 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.devcon5.digester.influx;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.devcon5.measure.Encoder;
+import io.devcon5.measure.Measurement;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Encodes large batches in parallel. A batch is split into chunks that are encoded concurrently on a bounded worker
+ * pool shared by all shards, the encoded chunks are then combined into a composite buffer without copying. The
+ * result is delivered on the context of the caller, so the event loop is not blocked while the chunks are encoded.
+ * <p>
+ * The encoder is configured with the following properties of the influx document:
+ * <ul>
+ * <li>encodeThreads - the number of threads of the worker pool, default is the number of available processors. A
+ * value of 0 disables parallel encoding</li>
+ * <li>parallelThreshold - the min number of points of a batch to be encoded in parallel, default is 50000</li>
+ * <li>encodeChunkSize - the number of points per chunk, default is 10000</li>
+ * </ul>
+ */
+class ParallelEncoder {
+
+    static final String POOL_NAME = "influx-encoder";
+
+    private final Encoder<Buffer> encoder;
+    private final WorkerExecutor executor;
+    private final int threshold;
+    private final int chunkSize;
+
+    ParallelEncoder(Encoder<Buffer> encoder, WorkerExecutor executor, int threshold, int chunkSize) {
+
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+        }
+        this.encoder = encoder;
+        this.executor = executor;
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Creates a parallel encoder from the configuration.
+     *
+     * @param vertx
+     *         the vertx instance providing the worker pool
+     * @param config
+     *         the influx document
+     * @param encoder
+     *         the encoder for the single chunks, it must be thread-safe
+     *
+     * @return the encoder or <code>null</code> if parallel encoding is disabled
+     */
+    static ParallelEncoder create(Vertx vertx, JsonObject config, Encoder<Buffer> encoder) {
+
+        final int threads = config.getInteger("encodeThreads", Runtime.getRuntime().availableProcessors());
+        if (threads <= 0) {
+            return null;
+        }
+        return new ParallelEncoder(encoder,
+                                   vertx.createSharedWorkerExecutor(POOL_NAME, threads),
+                                   config.getInteger("parallelThreshold", 50000),
+                                   config.getInteger("encodeChunkSize", 10000));
+    }
+
+    /**
+     * @param points
+     *         the number of points of a batch
+     *
+     * @return <code>true</code> if a batch of the given size is large enough to be encoded in parallel, smaller
+     * batches are encoded inline as the overhead of splitting outweighs the gain
+     */
+    boolean isParallel(int points) {
+
+        return points >= threshold && points > chunkSize;
+    }
+
+    /**
+     * Encodes the batch in chunks on the worker pool.
+     *
+     * @param batch
+     *         the batch to encode, it must not be modified until the handler is notified
+     * @param handler
+     *         the handler receiving the encoded batch
+     */
+    void encode(List<Measurement> batch, Handler<AsyncResult<Buffer>> handler) {
+
+        final Buffer[] chunks = new Buffer[(batch.size() + chunkSize - 1) / chunkSize];
+        //the results are delivered on the context of the caller, so the counter is not shared between threads
+        final int[] pending = {chunks.length};
+        for (int i = 0; i < chunks.length; i++) {
+            final int index = i;
+            final List<Measurement> chunk = batch.subList(i * chunkSize, Math.min((i + 1) * chunkSize, batch.size()));
+            executor.<Buffer>executeBlocking(f -> f.complete(encoder.encode(chunk)), false, encoded -> {
+                if (pending[0] <= 0) {
+                    return;
+                }
+                if (encoded.failed()) {
+                    pending[0] = 0;
+                    handler.handle(Future.failedFuture(encoded.cause()));
+                    return;
+                }
+                chunks[index] = encoded.result();
+                if (--pending[0] == 0) {
+                    handler.handle(Future.succeededFuture(concat(Arrays.asList(chunks))));
+                }
+            });
+        }
+    }
+
+    /**
+     * Combines the buffers in order into a single buffer that references the bytes of the parts instead of copying
+     * them.
+     *
+     * @param parts
+     *         the buffers to combine
+     *
+     * @return the combined buffer
+     */
+    static Buffer concat(List<Buffer> parts) {
+
+        final CompositeByteBuf composite = Unpooled.compositeBuffer(parts.size());
+        for (Buffer part : parts) {
+            composite.addComponent(true, part.getByteBuf());
+        }
+        return Buffer.buffer(composite);
+    }
+
+    /**
+     * Releases this encoder's reference to the shared worker pool.
+     */
+    void close() {
+
+        executor.close();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.digester.influx;
+
+/**
+ * Precision of the timestamps written to Influx. Timestamps of measurements are in ns and are truncated to the
+ * precision when encoded, the shorter timestamps reduce the size of the request and compress better in Influx.
+ */
+public enum Precision {
+
+    NANOSECONDS("ns", 1L),
+    MICROSECONDS("u", 1_000L),
+    MILLISECONDS("ms", 1_000_000L),
+    SECONDS("s", 1_000_000_000L);
+
+    private final String parameter;
+    private final long nanos;
+
+    Precision(String parameter, long nanos) {
+
+        this.parameter = parameter;
+        this.nanos = nanos;
+    }
+
+    /**
+     * @return the value of the <code>precision</code> query parameter of the Influx write request
+     */
+    public String parameter() {
+
+        return parameter;
+    }
+
+    /**
+     * Truncates a timestamp to this precision.
+     *
+     * @param timestampNanos
+     *         the timestamp in ns
+     *
+     * @return the timestamp in the unit of this precision
+     */
+    public long convert(long timestampNanos) {
+
+        return timestampNanos / nanos;
+    }
+
+    /**
+     * Determines the precision for a configuration value.
+     *
+     * @param name
+     *         one of <code>ns</code>, <code>us</code> (or <code>u</code>), <code>ms</code> or <code>s</code>
+     *
+     * @return the precision
+     */
+    public static Precision of(String name) {
+
+        switch (name) {
+            case "ns":
+            case "n":
+                return NANOSECONDS;
+            case "us":
+            case "u":
+                return MICROSECONDS;
+            case "ms":
+                return MILLISECONDS;
+            case "s":
+                return SECONDS;
+            default:
+                throw new IllegalArgumentException("Unknown precision " + name);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.digester.influx;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Decides whether and when a failed write to Influx is retried. The delay between attempts grows exponentially
+ * from the initial delay up to the max delay and is randomly reduced by up to the jitter factor, so that clients
+ * that failed at the same time do not retry at the same time. A <code>Retry-After</code> header sent by the server
+ * takes precedence over the calculated delay, but is capped at the max delay as well, so that an invalid or hostile
+ * header can not stall the writes for hours.
+ * <p>
+ * The policy is configured with the following properties of the digester configuration:
+ * <ul>
+ * <li>retries - the max number of retries per batch, default is 3, 0 disables retries</li>
+ * <li>retryDelay - the delay in ms before the first retry, default is 500</li>
+ * <li>retryMaxDelay - the max delay in ms between two attempts, default is 30000</li>
+ * <li>retryJitter - the max fraction (0.0 - 1.0) by which a delay is randomly reduced, default is 0.5</li>
+ * </ul>
+ */
+public class RetryPolicy {
+
+    public static final int DEFAULT_RETRIES = 3;
+    public static final long DEFAULT_DELAY = 500L;
+    public static final long DEFAULT_MAX_DELAY = 30000L;
+    public static final double DEFAULT_JITTER = 0.5;
+
+    private static final RetryPolicy NONE = new RetryPolicy(0, 0, 0, 0);
+
+    private final int maxRetries;
+    private final long initialDelay;
+    private final long maxDelay;
+    private final double jitter;
+
+    public RetryPolicy(int maxRetries, long initialDelay, long maxDelay, double jitter) {
+
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("retries must not be negative: " + maxRetries);
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("retryJitter must be between 0 and 1: " + jitter);
+        }
+        this.maxRetries = maxRetries;
+        this.initialDelay = Math.max(initialDelay, 1);
+        this.maxDelay = Math.max(maxDelay, this.initialDelay);
+        this.jitter = jitter;
+    }
+
+    /**
+     * @return a policy that never retries
+     */
+    public static RetryPolicy none() {
+
+        return NONE;
+    }
+
+    /**
+     * Creates a policy from the retry settings of a digester configuration.
+     *
+     * @param config
+     *         the configuration of the digester
+     *
+     * @return a new policy
+     */
+    public static RetryPolicy create(JsonObject config) {
+
+        return new RetryPolicy(config.getInteger("retries", DEFAULT_RETRIES),
+                config.getLong("retryDelay", DEFAULT_DELAY),
+                config.getLong("retryMaxDelay", DEFAULT_MAX_DELAY),
+                config.getDouble("retryJitter", DEFAULT_JITTER));
+    }
+
+    /**
+     * Determines if another attempt is made after a write failed.
+     *
+     * @param retry
+     *         the number of the retry, starting with 1 for the first retry
+     * @param error
+     *         the cause of the failed write
+     *
+     * @return <code>true</code> if the write should be retried
+     */
+    public boolean canRetry(int retry, Throwable error) {
+
+        return retry <= maxRetries && isRetryable(error);
+    }
+
+    /**
+     * Determines if a failed write may succeed when sent again. Network errors are retryable, rejections by the
+     * server only if {@link InfluxWriteException#isRetryable()}.
+     *
+     * @param error
+     *         the cause of the failed write
+     *
+     * @return <code>true</code> if the write may succeed when sent again
+     */
+    public static boolean isRetryable(Throwable error) {
+
+        return !(error instanceof InfluxWriteException) || ((InfluxWriteException) error).isRetryable();
+    }
+
+    /**
+     * Calculates the delay before an attempt.
+     *
+     * @param retry
+     *         the number of the retry, starting with 1 for the first retry
+     * @param retryAfter
+     *         the value of the <code>Retry-After</code> header of the failed response, may be <code>null</code>
+     *
+     * @return the delay in ms
+     */
+    public long delay(int retry, String retryAfter) {
+
+        final long requested = parseRetryAfter(retryAfter);
+        if (requested >= 0) {
+            return Math.max(Math.min(requested, maxDelay), 1);
+        }
+        long delay = initialDelay;
+        for (int i = 0; i < retry - 1 && delay < maxDelay; i++) {
+            delay <<= 1;
+        }
+        delay = Math.min(delay, maxDelay);
+        if (jitter > 0) {
+            delay -= (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+        }
+        return Math.max(delay, 1);
+    }
+
+    /**
+     * Parses the value of a <code>Retry-After</code> header, which is either a number of seconds or an HTTP date.
+     *
+     * @param retryAfter
+     *         the header value
+     *
+     * @return the delay in ms or -1 if the value is missing or invalid
+     */
+    static long parseRetryAfter(String retryAfter) {
+
+        if (retryAfter == null || retryAfter.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Math.max(Long.parseLong(retryAfter.trim()), 0) * 1000;
+        } catch (NumberFormatException e) {
+            try {
+                final ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis(), 0);
+            } catch (DateTimeParseException e2) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,495 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.influx;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+
+/**
+ * Persistent first-in-first-out store for encoded batches. The spool consists of append-only segment files that
+ * are memory-mapped for writing and reading. Each segment starts with a header containing the read and the write
+ * position, followed by the records, each prefixed with its length. Fully read segments are deleted, and
+ * if the total size of all segments exceeds the configured limit, the oldest segment is dropped.
+ * <p>
+ * The blocking operations are synchronized and may be called from any thread. The asynchronous variants
+ * run the blocking operations in order on the worker pool so they don't block the event loop. A record is removed
+ * by the {@link Record} handle returned when it was peeked, so a record that was dropped in the meantime because
+ * the spool exceeded its size does not cause the following, unsent record to be removed instead.
+ * <p>
+ * The spool is configured with the following properties:
+ * <ul>
+ * <li>directory - the directory where the segment files are stored, default is spool/influx</li>
+ * <li>segmentSize - the size of a single segment file in bytes, default is 16 MB</li>
+ * <li>maxSize - the max size of all segment files in bytes, default is 1 GB</li>
+ * </ul>
+ */
+class WriteAheadSpool {
+
+    private static final Logger LOG = getLogger(WriteAheadSpool.class);
+
+    public static final String DEFAULT_DIRECTORY = "spool/influx";
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    public static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "spool-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Vertx vertx;
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSize;
+
+    /**
+     * The segments ordered from oldest to newest. The last segment is the one that is written to.
+     */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    /**
+     * Segments that are fully read but could not be deleted yet because the file is still mapped.
+     */
+    private final List<Path> obsolete = new ArrayList<>();
+    private long nextSequence;
+    private boolean closed;
+
+    WriteAheadSpool(Vertx vertx, Path directory, int segmentSize, long maxSize) {
+
+        if (segmentSize <= Segment.HEADER_SIZE) {
+            throw new IllegalArgumentException("segmentSize too small: " + segmentSize);
+        }
+        this.vertx = vertx;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        recover();
+    }
+
+    static WriteAheadSpool create(Vertx vertx, JsonObject config) {
+
+        return new WriteAheadSpool(vertx,
+                Paths.get(config.getString("directory", DEFAULT_DIRECTORY)),
+                config.getInteger("segmentSize", DEFAULT_SEGMENT_SIZE),
+                config.getLong("maxSize", DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * Appends the buffer asynchronously to the end of the spool.
+     *
+     * @param record
+     *         the record to append
+     * @param handler
+     *         handler that is notified once the record is written
+     */
+    public void append(Buffer record, Handler<AsyncResult<Void>> handler) {
+
+        final byte[] data = record.getBytes();
+        vertx.<Void>executeBlocking(f -> {
+            append(data);
+            f.complete();
+        }, handler);
+    }
+
+    /**
+     * Reads the oldest record asynchronously without removing it.
+     *
+     * @param handler
+     *         handler that receives the record or null, if the spool is empty
+     */
+    public void peek(Handler<AsyncResult<Record>> handler) {
+
+        vertx.<Record>executeBlocking(f -> f.complete(peekRecord()), handler);
+    }
+
+    /**
+     * Removes a peeked record asynchronously.
+     *
+     * @param record
+     *         the record returned by {@link #peek(Handler)}
+     * @param handler
+     *         handler that is notified once the record is removed
+     */
+    public void remove(Record record, Handler<AsyncResult<Void>> handler) {
+
+        vertx.<Void>executeBlocking(f -> {
+            remove(record);
+            f.complete();
+        }, handler);
+    }
+
+    /**
+     * Closes the spool asynchronously, after all pending operations of the calling context are done.
+     *
+     * @param handler
+     *         handler that is notified once all segments are written to disk and closed
+     */
+    public void close(Handler<AsyncResult<Void>> handler) {
+
+        vertx.<Void>executeBlocking(f -> {
+            close();
+            f.complete();
+        }, handler);
+    }
+
+    public synchronized void append(byte[] data) {
+
+        if (closed) {
+            throw new IllegalStateException("Spool " + directory + " is closed");
+        }
+        Segment head = segments.peekLast();
+        if (head == null || !head.append(data)) {
+            head = newSegment(Math.max(segmentSize, Segment.HEADER_SIZE + 4 + data.length));
+            head.append(data);
+        }
+        enforceMaxSize();
+    }
+
+    public synchronized byte[] peek() {
+
+        final Record record = peekRecord();
+        return record == null ? null : record.data.getBytes();
+    }
+
+    public synchronized void remove() {
+
+        final Segment tail = tail();
+        if (tail != null) {
+            tail.remove();
+            tail();
+        }
+    }
+
+    /**
+     * Reads the oldest record without removing it.
+     *
+     * @return the record or null, if the spool is empty or closed
+     */
+    public synchronized Record peekRecord() {
+
+        final Segment tail = closed ? null : tail();
+        return tail == null ? null : new Record(tail.sequence, tail.readPos(), Buffer.buffer(tail.peek()));
+    }
+
+    /**
+     * Removes a peeked record, unless it is no longer the oldest record because its segment was dropped.
+     *
+     * @param record
+     *         the peeked record
+     *
+     * @return <code>true</code> if the record was removed
+     */
+    public synchronized boolean remove(Record record) {
+
+        final Segment tail = closed ? null : tail();
+        if (tail == null || tail.sequence != record.segment || tail.readPos() != record.position) {
+            return false;
+        }
+        tail.remove();
+        tail();
+        return true;
+    }
+
+    public synchronized boolean isEmpty() {
+
+        return tail() == null;
+    }
+
+    /**
+     * The total size of all segment files of this spool.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long size() {
+
+        long size = 0;
+        for (Segment s : segments) {
+            size += s.capacity();
+        }
+        return size;
+    }
+
+    public synchronized void close() {
+
+        closed = true;
+        segments.forEach(Segment::close);
+        segments.clear();
+    }
+
+    /**
+     * Determines the oldest segment that contains unread records. Fully read segments, except the head segment,
+     * are deleted.
+     *
+     * @return the oldest segment with unread records or null, if there is none
+     */
+    private Segment tail() {
+
+        Segment tail;
+        while ((tail = segments.peekFirst()) != null && !tail.hasUnread()) {
+            if (segments.size() == 1) {
+                return null;
+            }
+            delete(segments.pollFirst());
+        }
+        return tail;
+    }
+
+    private void enforceMaxSize() {
+
+        long size = size();
+        while (size > maxSize && segments.size() > 1) {
+            final Segment oldest = segments.pollFirst();
+            LOG.warn("Spool exceeds max size of {} bytes, dropping {} records of segment {}",
+                    maxSize, oldest.unreadRecords(), oldest.path);
+            size -= oldest.capacity();
+            delete(oldest);
+        }
+    }
+
+    private Segment newSegment(int size) {
+
+        final long sequence = nextSequence++;
+        final Path path = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        try {
+            final Segment segment = Segment.create(sequence, path, size);
+            segments.addLast(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create spool segment " + path, e);
+        }
+    }
+
+    private void delete(Segment segment) {
+
+        segment.close();
+        obsolete.add(segment.path);
+
+        //mapped files can not be deleted on every platform, they are retried with the next deletion
+        final Iterator<Path> it = obsolete.iterator();
+        while (it.hasNext()) {
+            final Path path = it.next();
+            try {
+                Files.deleteIfExists(path);
+                it.remove();
+            } catch (IOException e) {
+                LOG.debug("Could not delete spool segment {}", path, e);
+            }
+        }
+    }
+
+    private void recover() {
+
+        final TreeMap<Long, Path> files = new TreeMap<>();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                    SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path path : stream) {
+                    final String name = path.getFileName().toString();
+                    try {
+                        files.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                name.length() - SEGMENT_SUFFIX.length())), path);
+                    } catch (NumberFormatException e) {
+                        LOG.warn("Ignoring unknown file {} in spool", path);
+                    }
+                }
+            }
+            for (Map.Entry<Long, Path> file : files.entrySet()) {
+                final Segment segment = Segment.open(file.getKey(), file.getValue());
+                if (segment == null) {
+                    LOG.warn("Ignoring invalid spool segment {}", file.getValue());
+                } else {
+                    segments.addLast(segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open spool " + directory, e);
+        }
+        this.nextSequence = files.isEmpty() ? 0 : files.lastKey() + 1;
+        if (!segments.isEmpty()) {
+            LOG.info("Recovered {} spool segments from {}", segments.size(), directory);
+        }
+    }
+
+    /**
+     * A record read from the spool, identified by its segment and its position in the segment.
+     */
+    static class Record {
+
+        final long segment;
+        final int position;
+        final Buffer data;
+
+        Record(long segment, int position, Buffer data) {
+
+            this.segment = segment;
+            this.position = position;
+            this.data = data;
+        }
+    }
+
+    /**
+     * A single segment file.
+     */
+    static class Segment {
+
+        static final int HEADER_SIZE = 16;
+
+        private static final int MAGIC = 0x554d4f4e;
+        private static final int READ_POS = 4;
+        private static final int WRITE_POS = 8;
+
+        final long sequence;
+        final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer map;
+
+        private Segment(long sequence, Path path, FileChannel channel, MappedByteBuffer map) {
+
+            this.sequence = sequence;
+            this.path = path;
+            this.channel = channel;
+            this.map = map;
+        }
+
+        static Segment create(long sequence, Path path, int size) throws IOException {
+
+            final FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            final MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.putInt(0, MAGIC);
+            map.putInt(READ_POS, HEADER_SIZE);
+            map.putInt(WRITE_POS, HEADER_SIZE);
+            return new Segment(sequence, path, channel, map);
+        }
+
+        static Segment open(long sequence, Path path) throws IOException {
+
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                channel.close();
+                return null;
+            }
+            final MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            final Segment segment = new Segment(sequence, path, channel, map);
+            if (map.getInt(0) != MAGIC
+                    || segment.readPos() < HEADER_SIZE
+                    || segment.readPos() > segment.writePos()
+                    || segment.writePos() > size) {
+                segment.close();
+                return null;
+            }
+            return segment;
+        }
+
+        boolean append(byte[] data) {
+
+            final int pos = writePos();
+            if ((long) pos + 4 + data.length > map.capacity()) {
+                return false;
+            }
+            final ByteBuffer target = map.duplicate();
+            target.position(pos + 4);
+            target.put(data);
+            map.putInt(pos, data.length);
+            //the record becomes visible after it has been written completely
+            map.putInt(WRITE_POS, pos + 4 + data.length);
+            return true;
+        }
+
+        byte[] peek() {
+
+            final int pos = readPos();
+            final byte[] data = new byte[map.getInt(pos)];
+            final ByteBuffer source = map.duplicate();
+            source.position(pos + 4);
+            source.get(data);
+            return data;
+        }
+
+        void remove() {
+
+            final int pos = readPos();
+            map.putInt(READ_POS, pos + 4 + map.getInt(pos));
+        }
+
+        boolean hasUnread() {
+
+            return readPos() < writePos();
+        }
+
+        int unreadRecords() {
+
+            int count = 0;
+            for (int pos = readPos(), end = writePos(); pos < end; pos += 4 + map.getInt(pos)) {
+                count++;
+            }
+            return count;
+        }
+
+        int capacity() {
+
+            return map.capacity();
+        }
+
+        void close() {
+
+            try {
+                map.force();
+                channel.close();
+            } catch (IOException e) {
+                LOG.debug("Could not close spool segment {}", path, e);
+            }
+        }
+
+        private int readPos() {
+
+            return map.getInt(READ_POS);
+        }
+
+        private int writePos() {
+
+            return map.getInt(WRITE_POS);
+        }
+    }
+}
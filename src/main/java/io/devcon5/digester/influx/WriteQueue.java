@@ -0,0 +1,318 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.influx;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.devcon5.measure.Measurement;
+import io.devcon5.metrics.Metric;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Bounded queue of encoded batches between the batcher and the Influx client. The queue limits the number of
+ * concurrent write requests and the number of batches waiting for a request, so that the memory used by the
+ * digester stays bounded while Influx is slow. When the queue is full, the overflow policy decides which batch is
+ * given up. The queue is not thread-safe and must only be used from the context of the verticle that created it.
+ * Only the state that is reported as metric is published to other threads, see {@link #report(Measurement.Builder)}.
+ * <p>
+ * The queue is configured with the following properties of the digester configuration:
+ * <ul>
+ * <li>maxInFlight - the max number of concurrent write requests, default is 4</li>
+ * <li>queueSize - the max number of batches waiting for a write request, default is 1000</li>
+ * <li>overflow - the policy when the queue is full, <code>drop-oldest</code> to drop the longest waiting batch
+ * (default), <code>drop-newest</code> to drop the batch that is added or <code>spill</code> to hand the batch over
+ * to the spool</li>
+ * </ul>
+ */
+class WriteQueue implements Metric {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    /**
+     * Policy for a batch that is added to a full queue.
+     */
+    enum Overflow {
+        DROP_OLDEST,
+        DROP_NEWEST,
+        SPILL;
+
+        static Overflow of(String name) {
+
+            switch (name) {
+                case "drop-oldest":
+                    return DROP_OLDEST;
+                case "drop-newest":
+                    return DROP_NEWEST;
+                case "spill":
+                    return SPILL;
+                default:
+                    throw new IllegalArgumentException("Unknown overflow policy " + name);
+            }
+        }
+    }
+
+    /**
+     * Writes a batch. The sender must call the done handler exactly once, when the write completed, regardless
+     * whether it succeeded.
+     */
+    @FunctionalInterface
+    interface Sender {
+
+        void send(Buffer lines, int points, Handler<Void> done);
+    }
+
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final Overflow overflow;
+    private final Sender sender;
+    private final Sender spill;
+
+    private final Deque<Entry> queued;
+    private Handler<Buffer> dropHandler = lines -> {};
+    private Handler<Void> drainHandler;
+    /**
+     * The number of queued batches, written on the context of the queue and read by the metrics reporter
+     */
+    private volatile int depth;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong droppedBatches = new AtomicLong();
+    private final AtomicLong droppedPoints = new AtomicLong();
+    private final AtomicLong spilledBatches = new AtomicLong();
+
+    WriteQueue(int maxInFlight, int maxQueued, Overflow overflow, Sender sender, Sender spill) {
+
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("queueSize must not be negative: " + maxQueued);
+        }
+        if (overflow == Overflow.SPILL && spill == null) {
+            throw new IllegalArgumentException("overflow policy spill requires a spool");
+        }
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.overflow = overflow;
+        this.sender = sender;
+        this.spill = spill;
+        this.queued = new ArrayDeque<>(Math.min(maxQueued, 1024));
+    }
+
+    /**
+     * Creates a queue from the queue settings of a digester configuration.
+     *
+     * @param config
+     *         the configuration of the digester
+     * @param sender
+     *         the sender that writes the batches
+     * @param spill
+     *         the sender that takes over batches in case of an overflow, may be <code>null</code> if no spool is
+     *         configured
+     *
+     * @return a new queue
+     */
+    static WriteQueue create(JsonObject config, Sender sender, Sender spill) {
+
+        return new WriteQueue(config.getInteger("maxInFlight", DEFAULT_MAX_IN_FLIGHT),
+                config.getInteger("queueSize", DEFAULT_QUEUE_SIZE),
+                Overflow.of(config.getString("overflow", "drop-oldest")),
+                sender,
+                spill);
+    }
+
+    /**
+     * Sets the handler that is notified about batches dropped because of an overflow, i.e. to release their
+     * buffers.
+     *
+     * @param handler
+     *         the handler receiving the dropped batches
+     *
+     * @return this queue
+     */
+    WriteQueue dropHandler(Handler<Buffer> handler) {
+
+        this.dropHandler = handler;
+        return this;
+    }
+
+    /**
+     * Adds a batch to the queue. The batch is sent immediately if the max number of concurrent writes is not
+     * reached.
+     *
+     * @param lines
+     *         the encoded batch
+     * @param points
+     *         the number of points in the batch
+     */
+    void add(Buffer lines, int points) {
+
+        if (inFlight.get() < maxInFlight) {
+            send(lines, points);
+            return;
+        }
+        if (queued.size() < maxQueued) {
+            queued.addLast(new Entry(lines, points));
+            depth = queued.size();
+            return;
+        }
+        switch (overflow) {
+            case DROP_OLDEST:
+                if (maxQueued > 0) {
+                    final Entry oldest = queued.pollFirst();
+                    drop(oldest.lines, oldest.points);
+                    queued.addLast(new Entry(lines, points));
+                } else {
+                    drop(lines, points);
+                }
+                break;
+            case DROP_NEWEST:
+                drop(lines, points);
+                break;
+            case SPILL:
+                spilledBatches.incrementAndGet();
+                spill.send(lines, points, v -> {});
+                break;
+            default:
+                throw new IllegalStateException("Unsupported overflow policy " + overflow);
+        }
+    }
+
+    private void drop(Buffer lines, int points) {
+
+        droppedBatches.incrementAndGet();
+        droppedPoints.addAndGet(points);
+        dropHandler.handle(lines);
+    }
+
+    private void send(Buffer lines, int points) {
+
+        inFlight.incrementAndGet();
+        sender.send(lines, points, done -> {
+            inFlight.decrementAndGet();
+            final Entry next = queued.pollFirst();
+            depth = queued.size();
+            if (next != null) {
+                send(next.lines, next.points);
+            } else if (inFlight.get() == 0 && drainHandler != null) {
+                final Handler<Void> drained = drainHandler;
+                drainHandler = null;
+                drained.handle(null);
+            }
+        });
+    }
+
+    /**
+     * Notifies the handler once all batches are written, that is when no batch is queued and no write request is
+     * in flight anymore.
+     *
+     * @param handler
+     *         the handler that is notified once the queue is empty
+     */
+    void drain(Handler<Void> handler) {
+
+        if (inFlight.get() == 0 && queued.isEmpty()) {
+            handler.handle(null);
+        } else {
+            this.drainHandler = handler;
+        }
+    }
+
+    /**
+     * Removes all batches that wait for a write request and hands them over to the target, i.e. to spool the batches
+     * that could not be written before shutdown. Write requests in flight are not affected.
+     *
+     * @param target
+     *         the sender that takes over the queued batches
+     *
+     * @return the number of evicted batches
+     */
+    int evict(Sender target) {
+
+        int evicted = 0;
+        Entry entry;
+        while ((entry = queued.pollFirst()) != null) {
+            target.send(entry.lines, entry.points, v -> {});
+            evicted++;
+        }
+        depth = 0;
+        return evicted;
+    }
+
+    /**
+     * @return the number of batches waiting for a write request
+     */
+    int depth() {
+
+        return queued.size();
+    }
+
+    /**
+     * @return the number of write requests that have not completed yet
+     */
+    int inFlight() {
+
+        return inFlight.get();
+    }
+
+    /**
+     * @return the total number of points dropped because of an overflow
+     */
+    long droppedPoints() {
+
+        return droppedPoints.get();
+    }
+
+    /**
+     * Adds the current queue state to the measurement. The reported values are published atomically one by one, so
+     * they may be taken at slightly different points in time, but each value is current.
+     *
+     * @param measurement
+     *         the builder for the measurement with name and tags already set
+     *
+     * @return always <code>true</code>
+     */
+    @Override
+    public boolean report(Measurement.Builder measurement) {
+
+        measurement.value("depth", depth)
+                   .value("inFlight", inFlight.get())
+                   .value("droppedBatches", droppedBatches.get())
+                   .value("droppedPoints", droppedPoints.get())
+                   .value("spilledBatches", spilledBatches.get());
+        return true;
+    }
+
+    private static class Entry {
+
+        final Buffer lines;
+        final int points;
+
+        Entry(Buffer lines, int points) {
+
+            this.lines = lines;
+            this.points = points;
+        }
+    }
+}
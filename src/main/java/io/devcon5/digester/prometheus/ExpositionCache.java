@@ -0,0 +1,354 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.prometheus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+import io.devcon5.measure.Measurement;
+import io.devcon5.measure.SeriesKey;
+import io.devcon5.measure.ValueType;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Keeps the latest value of every series in the Prometheus text exposition format. Each numeric value of a
+ * measurement becomes a gauge named <code>&lt;measurement&gt;_&lt;value&gt;</code> with the tags of the measurement as
+ * labels, booleans are exposed as 0 and 1, strings are skipped.
+ * <p>
+ * The exposition is rendered incrementally: every series keeps its rendered line, which is only rendered again if
+ * its value changed, and the label block of a series is encoded once per series key. The complete exposition is a
+ * composite buffer that references the lines instead of copying them, it is cached together with its gzip
+ * compressed form until the next change. So a scrape without changes since the previous scrape does not render
+ * anything. The cache is not thread-safe and must only be used from the context of the digester.
+ */
+class ExpositionCache {
+
+    /**
+     * The label block of a series, <code>{tag1="value1",tag2="value2"}</code>
+     */
+    private static final SeriesKey.Encoding LABELS = SeriesKey.Encoding.of(ExpositionCache::labels);
+
+    private final Map<String, Family> families = new TreeMap<>();
+    /**
+     * Family names per measurement and value name, only contains names of existing families
+     */
+    private final Map<String, String> names = new HashMap<>();
+
+    private Buffer exposition;
+    private Buffer gzipped;
+
+    /**
+     * Updates the lines of the series of the measurement.
+     *
+     * @param m
+     *         the measurement with the latest values
+     * @param now
+     *         the current time in ms, used to expire the series
+     */
+    void update(Measurement m, long now) {
+
+        final SeriesKey key = m.seriesKey();
+        byte[] labels = null;
+        for (int i = 0, len = m.valueCount(); i < len; i++) {
+            final ValueType type = m.getValueType(i);
+            if (type != ValueType.BOOLEAN && !type.isNumeric()) {
+                continue;
+            }
+            if (labels == null) {
+                labels = key.encoded(LABELS);
+            }
+            final String name = familyName(key.getName(), m.getValueName(i));
+            families.computeIfAbsent(name, Family::new).update(key, labels, type, m.getRawValue(i), now);
+        }
+    }
+
+    /**
+     * Removes all series that have not been updated since the given time.
+     *
+     * @param expiredBefore
+     *         the time in ms, series last updated before this time are removed
+     *
+     * @return the number of removed lines
+     */
+    int expire(long expiredBefore) {
+
+        int removed = 0;
+        for (Iterator<Family> it = families.values().iterator(); it.hasNext(); ) {
+            final Family family = it.next();
+            removed += family.expire(expiredBefore);
+            if (family.lines.isEmpty()) {
+                it.remove();
+            }
+        }
+        if (removed > 0) {
+            names.values().retainAll(families.keySet());
+        }
+        return removed;
+    }
+
+    /**
+     * @return the number of exposed lines
+     */
+    int size() {
+
+        int size = 0;
+        for (Family family : families.values()) {
+            size += family.lines.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of cached family names
+     */
+    int namesSize() {
+
+        return names.size();
+    }
+
+    /**
+     * @return the complete exposition, rendered again only if a series changed since the last call
+     */
+    Buffer render() {
+
+        if (exposition == null) {
+            final List<byte[]> parts = new ArrayList<>(families.size() * 2);
+            for (Family family : families.values()) {
+                parts.add(family.header);
+                for (Line line : family.lines.values()) {
+                    parts.add(line.bytes);
+                }
+            }
+            exposition = Buffer.buffer(Unpooled.wrappedBuffer(parts.toArray(new byte[parts.size()][])));
+        }
+        return exposition;
+    }
+
+    /**
+     * @return the gzip compressed exposition or <code>null</code> if the exposition changed since it was compressed
+     */
+    Buffer getGzipped() {
+
+        return gzipped;
+    }
+
+    /**
+     * Caches the compressed exposition, as long as the exposition did not change during compression.
+     *
+     * @param source
+     *         the exposition that was compressed, as returned by {@link #render()}
+     * @param compressed
+     *         the gzip compressed exposition
+     */
+    void setGzipped(Buffer source, Buffer compressed) {
+
+        if (source == exposition) {
+            gzipped = compressed;
+        }
+    }
+
+    private void invalidate() {
+
+        exposition = null;
+        gzipped = null;
+    }
+
+    private String familyName(String measurement, String value) {
+
+        final String key = measurement + '\0' + value;
+        String name = names.get(key);
+        if (name == null) {
+            name = sanitize(measurement + '_' + value, true);
+            names.put(key, name);
+        }
+        return name;
+    }
+
+    /**
+     * Replaces all characters that are not allowed in metric names (or label names) by an underscore.
+     */
+    static String sanitize(String name, boolean metric) {
+
+        final StringBuilder sb = new StringBuilder(name.length() + 1);
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || (c == ':' && metric)
+                    || (c >= '0' && c <= '9' && i > 0)) {
+                sb.append(c);
+            } else if (c >= '0' && c <= '9') {
+                sb.append('_').append(c);
+            } else {
+                sb.append('_');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static byte[] labels(SeriesKey key) {
+
+        if (key.tagCount() == 0) {
+            return new byte[0];
+        }
+        final StringBuilder sb = new StringBuilder(64).append('{');
+        for (int i = 0; i < key.tagCount(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(sanitize(key.getTagKey(i), false)).append("=\"");
+            final String value = key.getTagValue(i);
+            for (int j = 0; j < value.length(); j++) {
+                final char c = value.charAt(j);
+                if (c == '\\' || c == '"') {
+                    sb.append('\\').append(c);
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String formatValue(ValueType type, long raw) {
+
+        if (type == ValueType.BOOLEAN) {
+            return raw != 0 ? "1" : "0";
+        }
+        if (!type.isFloatingPoint()) {
+            return Long.toString(raw);
+        }
+        final double d = type.rawToDouble(raw);
+        if (Double.isNaN(d)) {
+            return "NaN";
+        } else if (Double.isInfinite(d)) {
+            return d > 0 ? "+Inf" : "-Inf";
+        }
+        return Double.toString(d);
+    }
+
+    static Buffer gzip(Buffer data) {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(data.length() / 4, 64));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data.getBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Buffer.buffer(out.toByteArray());
+    }
+
+    private static class Line {
+
+        byte[] bytes;
+        ValueType type;
+        long raw;
+        long lastUpdate;
+    }
+
+    /**
+     * All series of one metric name, rendered as one group with a single type line.
+     */
+    private class Family {
+
+        final byte[] nameBytes;
+        final byte[] header;
+        final Map<SeriesKey, Line> lines = new LinkedHashMap<>();
+
+        Family(String name) {
+
+            this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            this.header = ("# TYPE " + name + " gauge\n").getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Updates the line of the series, the line is only rendered again if the value changed.
+         */
+        void update(SeriesKey key, byte[] labels, ValueType type, long raw, long now) {
+
+            Line line = lines.get(key);
+            if (line == null) {
+                line = new Line();
+                lines.put(key, line);
+            } else if (line.type == type && line.raw == raw) {
+                line.lastUpdate = now;
+                return;
+            }
+            line.bytes = line(labels, formatValue(type, raw));
+            line.type = type;
+            line.raw = raw;
+            line.lastUpdate = now;
+            changed();
+        }
+
+        /**
+         * Removes the lines of all series of the family that have not been updated since the given time.
+         *
+         * @param expiredBefore
+         *         the time in ms, lines last updated before this time are removed
+         *
+         * @return the number of removed lines
+         */
+        int expire(long expiredBefore) {
+
+            int removed = 0;
+            for (Iterator<Line> it = lines.values().iterator(); it.hasNext(); ) {
+                if (it.next().lastUpdate < expiredBefore) {
+                    it.remove();
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                changed();
+            }
+            return removed;
+        }
+
+        private void changed() {
+
+            invalidate();
+        }
+
+        private byte[] line(byte[] labels, String value) {
+
+            final byte[] line = new byte[nameBytes.length + labels.length + value.length() + 2];
+            System.arraycopy(nameBytes, 0, line, 0, nameBytes.length);
+            System.arraycopy(labels, 0, line, nameBytes.length, labels.length);
+            int pos = nameBytes.length + labels.length;
+            line[pos++] = ' ';
+            for (int i = 0; i < value.length(); i++) {
+                line[pos++] = (byte) value.charAt(i);
+            }
+            line[pos] = '\n';
+            return line;
+        }
+    }
+}
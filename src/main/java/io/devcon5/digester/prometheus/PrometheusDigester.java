@@ -0,0 +1,159 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.prometheus;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import io.devcon5.measure.Digester;
+import io.devcon5.measure.MeasurementBatchCodec;
+import io.devcon5.metrics.Histogram;
+import io.devcon5.metrics.SelfMetrics;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+
+/**
+ * Digester that exposes the latest value of every series for scraping by Prometheus. The digester keeps the
+ * measurements in an {@link ExpositionCache} and serves them in the text exposition format over HTTP, gzip
+ * compressed if the client accepts it. Scrapes are answered from the cached exposition, which is only rendered again
+ * for the series that changed since the previous scrape.
+ * <p>
+ * The digester is configured with the following properties:
+ * <ul>
+ * <li>host - the address the HTTP server binds to, default is 0.0.0.0</li>
+ * <li>port - the port of the HTTP server, default is 9273</li>
+ * <li>path - the path of the exposition, default is /metrics</li>
+ * <li>ttl - the time in ms after which a series that was not updated is removed, default is 300000</li>
+ * </ul>
+ */
+public class PrometheusDigester extends AbstractVerticle implements Digester {
+
+    private static final Logger LOG = getLogger(PrometheusDigester.class);
+
+    public static final int DEFAULT_PORT = 9273;
+    public static final long DEFAULT_TTL = 300000L;
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final ExpositionCache cache = new ExpositionCache();
+    private HttpServer server;
+    private long expiryTimer = -1;
+    private Histogram scrapeSize;
+
+    @Override
+    public void start(Future<Void> startFuture) throws Exception {
+
+        final JsonObject config = config();
+        final String path = config.getString("path", "/metrics");
+        final long ttl = config.getLong("ttl", DEFAULT_TTL);
+
+        MeasurementBatchCodec.register(vertx);
+        this.scrapeSize = SelfMetrics.histogram("prometheus.scrapeBytes", "path", path);
+
+        vertx.eventBus().consumer(Digester.digestAddress(config), msg -> {
+            final long now = System.currentTimeMillis();
+            decode(msg.body(), m -> cache.update(m, now));
+        });
+        this.expiryTimer = vertx.setPeriodic(Math.max(ttl / 10, 1000L), id -> {
+            final int removed = cache.expire(System.currentTimeMillis() - ttl);
+            if (removed > 0 && LOG.isDebugEnabled()) {
+                LOG.debug("Expired {} series", removed);
+            }
+        });
+
+        this.server = vertx.createHttpServer().requestHandler(req -> {
+            if (req.method() != HttpMethod.GET && req.method() != HttpMethod.HEAD) {
+                req.response().setStatusCode(405).end();
+            } else if (!path.equals(req.path())) {
+                req.response().setStatusCode(404).end();
+            } else {
+                scrape(req);
+            }
+        }).listen(config.getInteger("port", DEFAULT_PORT), config.getString("host", "0.0.0.0"), listening -> {
+            if (listening.succeeded()) {
+                LOG.info("Exposing measurements on port {}{}", listening.result().actualPort(), path);
+                startFuture.complete();
+            } else {
+                startFuture.fail(listening.cause());
+            }
+        });
+    }
+
+    @Override
+    public void stop() throws Exception {
+
+        if (expiryTimer != -1) {
+            vertx.cancelTimer(expiryTimer);
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * @return the port the server listens on, or 0 if it is not started
+     */
+    int actualPort() {
+
+        return server == null ? 0 : server.actualPort();
+    }
+
+    private void scrape(HttpServerRequest req) {
+
+        final Buffer exposition = cache.render();
+        final String accept = req.getHeader("Accept-Encoding");
+        if (accept == null || !accept.contains("gzip")) {
+            respond(req, exposition, false);
+            return;
+        }
+        final Buffer gzipped = cache.getGzipped();
+        if (gzipped != null) {
+            respond(req, gzipped, true);
+            return;
+        }
+        vertx.<Buffer>executeBlocking(f -> f.complete(ExpositionCache.gzip(exposition)), false, compressed -> {
+            if (compressed.succeeded()) {
+                cache.setGzipped(exposition, compressed.result());
+                respond(req, compressed.result(), true);
+            } else {
+                LOG.warn("Could not compress exposition", compressed.cause());
+                respond(req, exposition, false);
+            }
+        });
+    }
+
+    private void respond(HttpServerRequest req, Buffer body, boolean gzipped) {
+
+        scrapeSize.record(body.length());
+        req.response().putHeader("Content-Type", CONTENT_TYPE);
+        if (gzipped) {
+            req.response().putHeader("Content-Encoding", "gzip");
+        }
+        if (req.method() == HttpMethod.HEAD) {
+            req.response().putHeader("Content-Length", String.valueOf(body.length())).end();
+        } else {
+            req.response().end(body);
+        }
+    }
+}
@@ -29,6 +29,15 @@ import io.vertx.core.buffer.Buffer;
 /**
  * Encoding do write and read a measurement from a Vert.x buffer. Unlike the JsonFormat, the buffer encoding
  * is more efficient toward space requirement.
+ * <p>
+ * The first byte of each encoded block denotes the version of the format:
+ * <ul>
+ * <li><code>0x00</code> - version 1, a single measurement whose fields are separated by delimiter bytes</li>
+ * <li><code>0x02</code> - version 2, a header with the number of measurements followed by the measurements. Strings
+ * are prefixed with their length, integers are written as variable length integers and every group of tags and
+ * values is prefixed with the number of entries, so a decoder never has to scan for delimiters.</li>
+ * </ul>
+ * The decoder accepts both versions, the encoder writes version 2.
  */
 public class BinaryEncoding {
 
@@ -42,10 +51,21 @@ public class BinaryEncoding {
     private static final byte ASSIGN = (byte) 0xfa;
     private static final byte SEPARATOR = (byte) 0xfd;
     private static final byte GROUP_SEPARATOR = (byte) 0xfe;
+    static final byte VERSION_2 = (byte) 0x02;
 
-    public static Encoder<Buffer> encoder() {
+    public static BufferEncoder encoder() {
 
-        return new BufferEncoder();
+        return new CompactBufferEncoder();
+    }
+
+    /**
+     * Encoder for the delimiter-based version 1 format, for peers that can not decode version 2.
+     *
+     * @return an encoder writing the version 1 format
+     */
+    public static Encoder<Buffer> legacyEncoder() {
+
+        return new LegacyBufferEncoder();
     }
 
     public static Decoder<Buffer> decoder() {
@@ -53,7 +73,36 @@ public class BinaryEncoding {
         return new BufferDecoder();
     }
 
-    private static class BufferEncoder implements Encoder<Buffer> {
+    /**
+     * Reads a single measurement of a version 2 block.
+     *
+     * @param cursor
+     *         the cursor positioned at the start of the measurement, it is positioned after the measurement when
+     *         this method returns
+     *
+     * @return the measurement
+     */
+    static Measurement readCompactMeasurement(BufferCursor cursor) {
+
+        final Measurement.Builder builder = Measurement.builder();
+        builder.name(cursor.readString());
+        builder.timestamp(cursor.readVarLong());
+        for (int t = 0, tags = cursor.readVarInt(); t < tags; t++) {
+            builder.tag(cursor.readString(), cursor.readString());
+        }
+        for (int v = 0, values = cursor.readVarInt(); v < values; v++) {
+            final String key = cursor.readString();
+            final ValueType type = ValueType.fromCode(cursor.readByte());
+            if (type == ValueType.STRING) {
+                builder.value(key, cursor.readString());
+            } else {
+                builder.rawValue(key, type, BufferDecoder.readCompactRawValue(cursor, type));
+            }
+        }
+        return builder.build();
+    }
+
+    private static class LegacyBufferEncoder implements Encoder<Buffer> {
 
         @Override
         public Buffer encode(Collection<Measurement> measurements) {
@@ -77,7 +126,7 @@ public class BinaryEncoding {
 
         private void writeName(final Buffer buf, final Measurement m) {
 
-            buf.appendString(m.name)
+            buf.appendString(m.getName())
                .appendByte(GROUP_SEPARATOR);
         }
 
@@ -89,37 +138,112 @@ public class BinaryEncoding {
 
         private void writeTags(final Buffer buf, final Measurement m) {
 
-            m.tags.forEach((k, v) -> buf.appendString(k)
-                                        .appendByte(ASSIGN)
-                                        .appendString(v)
-                                        .appendByte(SEPARATOR));
+            final SeriesKey series = m.seriesKey();
+            for (int i = 0, count = series.tagCount(); i < count; i++) {
+                buf.appendString(series.getTagKey(i))
+                   .appendByte(ASSIGN)
+                   .appendString(series.getTagValue(i))
+                   .appendByte(SEPARATOR);
+            }
             buf.appendByte(GROUP_SEPARATOR);
         }
 
         private void writeValues(final Buffer buf, final Measurement m) {
 
-            m.values.forEach((k, v) -> {
-                buf.appendString(k)
+            for (int i = 0, count = m.valueCount(); i < count; i++) {
+                buf.appendString(m.getValueName(i))
                    .appendByte(ASSIGN);
-                writeValue(buf, v);
+                writeValue(buf, m, i);
                 buf.appendByte(SEPARATOR);
-            });
+            }
+        }
+
+        private void writeValue(Buffer buf, Measurement m, int i) {
+
+            final ValueType type = m.getValueType(i);
+            buf.appendByte(type.code());
+            switch (type) {
+                case INTEGER:
+                    buf.appendInt((int) m.getRawValue(i));
+                    break;
+                case LONG:
+                    buf.appendLong(m.getRawValue(i));
+                    break;
+                case FLOAT:
+                    buf.appendInt((int) m.getRawValue(i));
+                    break;
+                case DOUBLE:
+                    buf.appendLong(m.getRawValue(i));
+                    break;
+                case BOOLEAN:
+                    buf.appendByte((byte) m.getRawValue(i));
+                    break;
+                default:
+                    buf.appendString((String) m.getValue(i));
+            }
+        }
+    }
+
+    private static class CompactBufferEncoder implements BufferEncoder {
+
+        @Override
+        public Buffer encode(Collection<Measurement> measurements) {
+
+            return encodeTo(measurements, Buffer.buffer(48 * measurements.size() + 8));
+        }
+
+        @Override
+        public Buffer encodeTo(Collection<Measurement> measurements, Buffer buf) {
+
+            buf.appendByte(VERSION_2);
+            BufferCursor.writeVarInt(buf, measurements.size());
+            for (Measurement m : measurements) {
+                BufferCursor.writeString(buf, m.getName());
+                BufferCursor.writeVarLong(buf, m.timestamp);
+                writeTags(buf, m);
+                writeValues(buf, m);
+            }
+            return buf;
         }
 
-        private void writeValue(Buffer buf, Object v) {
-
-            if (v instanceof Integer) {
-                buf.appendByte(TYPE_INTEGER).appendInt((Integer) v);
-            } else if (v instanceof Long) {
-                buf.appendByte(TYPE_LONG).appendLong((Long) v);
-            } else if (v instanceof Float) {
-                buf.appendByte(TYPE_FLOAT).appendFloat((Float) v);
-            } else if (v instanceof Double) {
-                buf.appendByte(TYPE_DOUBLE).appendDouble((Double) v);
-            } else if (v instanceof Boolean) {
-                buf.appendByte(TYPE_BOOLEAN).appendByte((byte) ((Boolean) v ? 1 : 0));
-            } else if (v instanceof String) {
-                buf.appendByte(TYPE_STRING).appendString((String) v);
+        private void writeTags(final Buffer buf, final Measurement m) {
+
+            final SeriesKey series = m.seriesKey();
+            final int count = series.tagCount();
+            BufferCursor.writeVarInt(buf, count);
+            for (int i = 0; i < count; i++) {
+                BufferCursor.writeString(buf, series.getTagKey(i));
+                BufferCursor.writeString(buf, series.getTagValue(i));
+            }
+        }
+
+        private void writeValues(final Buffer buf, final Measurement m) {
+
+            final int count = m.valueCount();
+            BufferCursor.writeVarInt(buf, count);
+            for (int i = 0; i < count; i++) {
+                BufferCursor.writeString(buf, m.getValueName(i));
+                final ValueType type = m.getValueType(i);
+                buf.appendByte(type.code());
+                switch (type) {
+                    case INTEGER:
+                        BufferCursor.writeZigZagInt(buf, (int) m.getRawValue(i));
+                        break;
+                    case LONG:
+                        BufferCursor.writeZigZagLong(buf, m.getRawValue(i));
+                        break;
+                    case FLOAT:
+                        buf.appendInt((int) m.getRawValue(i));
+                        break;
+                    case DOUBLE:
+                        buf.appendLong(m.getRawValue(i));
+                        break;
+                    case BOOLEAN:
+                        buf.appendByte((byte) m.getRawValue(i));
+                        break;
+                    default:
+                        BufferCursor.writeString(buf, (String) m.getValue(i));
+                }
             }
         }
     }
@@ -130,13 +254,58 @@ public class BinaryEncoding {
         public Measurement[] decode(Buffer buf) {
 
             final List<Measurement> measurements = new ArrayList<>();
+            decode(buf, measurements::add);
+            return measurements.toArray(new Measurement[0]);
+        }
+
+        @Override
+        public void decode(Buffer buf, Consumer<Measurement> sink) {
 
             int start = 0;
-            while (start < buf.length()) {
-                start = parseAndAddMeasurement(buf, start, measurements::add);
+            try {
+                while (start < buf.length()) {
+                    switch (buf.getByte(start)) {
+                        case LEADIN:
+                            start = parseAndAddMeasurement(buf, start, sink);
+                            break;
+                        case VERSION_2:
+                            start = parseCompactBlock(buf, start + 1, sink);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unsupported encoding version " + buf.getByte(start));
+                    }
+                }
+            } catch (IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Buffer has invalid structure", e);
             }
+        }
 
-            return measurements.toArray(new Measurement[0]);
+        private int parseCompactBlock(final Buffer buf, int start, final Consumer<Measurement> callback) {
+
+            final BufferCursor cursor = new BufferCursor(buf, start);
+
+            for (int i = 0, count = cursor.readVarInt(); i < count; i++) {
+                callback.accept(readCompactMeasurement(cursor));
+            }
+            return cursor.position();
+        }
+
+        private static long readCompactRawValue(final BufferCursor cursor, final ValueType type) {
+
+            switch (type) {
+                case INTEGER:
+                    return cursor.readZigZagInt();
+                case LONG:
+                    return cursor.readZigZagLong();
+                case FLOAT:
+                    return Float.floatToRawIntBits(cursor.readFloat());
+                case DOUBLE:
+                    return Double.doubleToRawLongBits(cursor.readDouble());
+                case BOOLEAN:
+                    return cursor.readByte() == 1 ? 1 : 0;
+                default:
+                    throw new IllegalArgumentException("No raw representation for " + type);
+            }
         }
 
         private int parseAndAddMeasurement(final Buffer buf, int start, final Consumer<Measurement> callback) {
@@ -0,0 +1,168 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.measure;
+
+import java.nio.charset.StandardCharsets;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Sequential reader for the primitives of the binary encoding. Strings are prefixed by their length in bytes and
+ * integers are written as variable length integers, with zig-zag encoding for signed values. The static
+ * write methods are the counterpart for encoding.
+ */
+final class BufferCursor {
+
+    private final Buffer buf;
+    private int pos;
+
+    BufferCursor(Buffer buf, int pos) {
+
+        this.buf = buf;
+        this.pos = pos;
+    }
+
+    int position() {
+
+        return pos;
+    }
+
+    void position(int pos) {
+
+        this.pos = pos;
+    }
+
+    boolean hasRemaining() {
+
+        return pos < buf.length();
+    }
+
+    byte readByte() {
+
+        return buf.getByte(pos++);
+    }
+
+    byte peekByte() {
+
+        return buf.getByte(pos);
+    }
+
+    int readVarInt() {
+
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte b = buf.getByte(pos++);
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable length integer at " + (pos - 1));
+    }
+
+    long readVarLong() {
+
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = buf.getByte(pos++);
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable length long at " + (pos - 1));
+    }
+
+    int readZigZagInt() {
+
+        final int raw = readVarInt();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    long readZigZagLong() {
+
+        final long raw = readVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    float readFloat() {
+
+        final float value = buf.getFloat(pos);
+        pos += 4;
+        return value;
+    }
+
+    double readDouble() {
+
+        final double value = buf.getDouble(pos);
+        pos += 8;
+        return value;
+    }
+
+    String readString() {
+
+        final int len = readVarInt();
+        final String value = buf.getString(pos, pos + len, "UTF-8");
+        pos += len;
+        return value;
+    }
+
+    /**
+     * Skips a length-prefixed string without decoding it.
+     */
+    void skipString() {
+
+        final int len = readVarInt();
+        pos += len;
+    }
+
+    static Buffer writeVarInt(Buffer buf, int value) {
+
+        while ((value & ~0x7f) != 0) {
+            buf.appendByte((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        return buf.appendByte((byte) value);
+    }
+
+    static Buffer writeVarLong(Buffer buf, long value) {
+
+        while ((value & ~0x7fL) != 0) {
+            buf.appendByte((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        return buf.appendByte((byte) value);
+    }
+
+    static Buffer writeZigZagInt(Buffer buf, int value) {
+
+        return writeVarInt(buf, (value << 1) ^ (value >> 31));
+    }
+
+    static Buffer writeZigZagLong(Buffer buf, long value) {
+
+        return writeVarLong(buf, (value << 1) ^ (value >> 63));
+    }
+
+    static Buffer writeString(Buffer buf, String value) {
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return writeVarInt(buf, bytes.length).appendBytes(bytes);
+    }
+}
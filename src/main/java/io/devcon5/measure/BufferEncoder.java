@@ -0,0 +1,42 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.measure;
+
+import java.util.Collection;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Encoder that appends the encoded measurements to a buffer supplied by the caller, so the caller decides how the
+ * buffer is allocated, i.e. from a pool, and can encode several batches into the same buffer.
+ */
+public interface BufferEncoder extends Encoder<Buffer> {
+
+    /**
+     * Appends the encoded measurements to the target buffer.
+     *
+     * @param measurements
+     *         the measurements to encode
+     * @param target
+     *         the buffer to append to
+     *
+     * @return the target buffer
+     */
+    Buffer encodeTo(Collection<Measurement> measurements, Buffer target);
+}
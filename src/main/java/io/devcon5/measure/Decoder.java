@@ -18,6 +18,8 @@
 
 package io.devcon5.measure;
 
+import java.util.function.Consumer;
+
 /**
  * Decodes a single Measument Point from an encoded representation
  * @param <T>
@@ -36,4 +38,32 @@ public interface Decoder<T> {
      *  the decoded measurement. Must not be null.
      */
     Measurement[] decode(T encodedMeasurement);
+
+    /**
+     * Decodes the measurements into a batch.
+     *
+     * @param encodedMeasurement
+     *  the encoded measurements. Must not be null.
+     * @return
+     *  the decoded measurements. Must not be null.
+     */
+    default MeasurementBatch decodeBatch(T encodedMeasurement) {
+        return MeasurementBatch.wrap(decode(encodedMeasurement));
+    }
+
+    /**
+     * Decodes the measurements one by one and hands each measurement to the sink as soon as it is decoded, so the
+     * decoded measurements don't have to be held in memory all at once. The default implementation decodes all
+     * measurements first, decoders should override it to decode incrementally.
+     *
+     * @param encodedMeasurement
+     *  the encoded measurements. Must not be null.
+     * @param sink
+     *  the consumer of the decoded measurements, called in the order of the encoded measurements
+     */
+    default void decode(T encodedMeasurement, Consumer<Measurement> sink) {
+        for (Measurement m : decode(encodedMeasurement)) {
+            sink.accept(m);
+        }
+    }
 }
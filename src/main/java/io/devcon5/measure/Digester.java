@@ -19,9 +19,11 @@
 package io.devcon5.measure;
 
 import java.util.Objects;
+import java.util.function.Consumer;
 
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 
 /**
  * Marker interface for Digesters. Digesters should be implemented as Verticles that receive measurements sent
@@ -34,10 +36,26 @@ public interface Digester {
      */
     String DIGEST_ADDR = "persist";
 
+    /**
+     * Determines the address a digester receives measurements on. A digester that is deployed as multiple instances
+     * gets an individual address per instance set in its configuration as <code>digestAddress</code>, otherwise it
+     * receives on {@link #DIGEST_ADDR}.
+     *
+     * @param config
+     *         the configuration of the digester
+     *
+     * @return the address to consume measurements from
+     */
+    static String digestAddress(JsonObject config) {
+
+        return config.getString("digestAddress", DIGEST_ADDR);
+    }
+
     /**
      * Decodes an encoded measure using an appropriate decoder.
      * The default implementation supports the following types:
      * <ul>
+     * <li>{@link io.devcon5.measure.MeasurementBatch} - no decoding required</li>
      * <li>{@link io.vertx.core.buffer.Buffer} - {@link io.devcon5.measure.BinaryEncoding}</li>
      * <li>{@link io.vertx.core.json.JsonArray - {@link io.devcon5.measure.JsonEncoding}}</li>
      * </ul>
@@ -48,17 +66,47 @@ public interface Digester {
      * @return the decoded measurements
      *
      * @throws java.lang.IllegalArgumentException
-     *         if the object is neither of type Buffer nor JsonObject
+     *         if the object is neither of type MeasurementBatch, Buffer nor JsonArray
      */
     default Measurement[] decode(Object o) {
 
         Objects.requireNonNull(o, "encoded measurement was null");
 
-        if (o instanceof Buffer) {
+        if (o instanceof MeasurementBatch) {
+            return ((MeasurementBatch) o).toArray();
+        } else if (o instanceof Buffer) {
             return BinaryEncoding.decoder().decode((Buffer) o);
         } else if (o instanceof JsonArray) {
             return JsonEncoding.decoder().decode((JsonArray) o);
         }
         throw new IllegalArgumentException("Unsupported type " + o.getClass());
     }
+
+    /**
+     * Decodes encoded measurements incrementally, see {@link Decoder#decode(Object, Consumer)}. Each measurement is
+     * handed to the sink as soon as it is decoded, so the digester can process it without holding all decoded
+     * measurements. The supported types are the same as for {@link #decode(Object)}.
+     *
+     * @param o
+     *         the measurements in a specific encoding. Must not be null.
+     * @param sink
+     *         the consumer of the decoded measurements
+     *
+     * @throws java.lang.IllegalArgumentException
+     *         if the object is neither of type MeasurementBatch, Buffer nor JsonArray
+     */
+    default void decode(Object o, Consumer<Measurement> sink) {
+
+        Objects.requireNonNull(o, "encoded measurement was null");
+
+        if (o instanceof MeasurementBatch) {
+            ((MeasurementBatch) o).forEach(sink);
+        } else if (o instanceof Buffer) {
+            BinaryEncoding.decoder().decode((Buffer) o, sink);
+        } else if (o instanceof JsonArray) {
+            JsonEncoding.decoder().decode((JsonArray) o, sink);
+        } else {
+            throw new IllegalArgumentException("Unsupported type " + o.getClass());
+        }
+    }
 }
@@ -18,18 +18,38 @@
 
 package io.devcon5.measure;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 /**
- *
+ * Encoding to write and read measurements as JSON array of objects with the fields <code>name</code>,
+ * <code>timestamp</code>, <code>tags</code> and <code>values</code>.
+ * <p>
+ * The buffer encoder and decoder stream the measurements with the Jackson generator and parser directly from and to
+ * a Vert.x buffer, without building a tree of json objects. The {@link JsonArray} encoder and decoder are used for
+ * the event bus, i.e. by the JavaScript collectors, and convert between measurements and the json tree directly.
  */
 public class JsonEncoding {
 
+    private static final JsonFactory FACTORY = Json.mapper.getFactory();
+
     public static Decoder<JsonArray> decoder() {
         return new JsonDecoder();
     }
@@ -37,12 +57,46 @@ public class JsonEncoding {
         return new JsonEncoder();
     }
 
+    /**
+     * @return a decoder streaming the measurements from a buffer containing a JSON array
+     */
+    public static Decoder<Buffer> bufferDecoder() {
+        return new StreamingDecoder();
+    }
+
+    /**
+     * @return an encoder streaming the measurements as JSON array into a buffer
+     */
+    public static BufferEncoder bufferEncoder() {
+        return new StreamingEncoder();
+    }
+
     private static class JsonEncoder implements Encoder<JsonArray>{
 
         @Override
         public JsonArray encode(final Collection<Measurement> m) {
 
-            return new JsonArray(io.vertx.core.json.Json.encode(m));
+            final JsonArray array = new JsonArray(new ArrayList<>(m.size()));
+            for (Measurement measurement : m) {
+                final JsonObject values = new JsonObject();
+                for (int i = 0, len = measurement.valueCount(); i < len; i++) {
+                    values.put(measurement.getValueName(i), measurement.getValue(i));
+                }
+                array.add(new JsonObject().put("name", measurement.getName())
+                                          .put("timestamp", measurement.getTimestamp())
+                                          .put("tags", tags(measurement.seriesKey()))
+                                          .put("values", values));
+            }
+            return array;
+        }
+
+        private static JsonObject tags(SeriesKey key) {
+
+            final JsonObject tags = new JsonObject();
+            for (int i = 0, len = key.tagCount(); i < len; i++) {
+                tags.put(key.getTagKey(i), key.getTagValue(i));
+            }
+            return tags;
         }
     }
 
@@ -51,18 +105,22 @@ public class JsonEncoding {
         @Override
         public Measurement[] decode(final JsonArray encodedMeasurement) {
 
-            List<Measurement> measurements = new ArrayList<>();
+            final Measurement[] measurements = new Measurement[encodedMeasurement.size()];
+            final int[] count = {0};
+            decode(encodedMeasurement, m -> measurements[count[0]++] = m);
+            return measurements;
+        }
+
+        @Override
+        public void decode(final JsonArray encodedMeasurement, final Consumer<Measurement> sink) {
 
             for(int i = 0; i < encodedMeasurement.size(); i++){
                 Object value = encodedMeasurement.getValue(i);
                 if(!(value instanceof JsonObject)) {
                     throw new IllegalArgumentException("Invalid array structure, Object expected");
                 }
-                JsonObject jMeasurement = encodedMeasurement.getJsonObject(i);
-                measurements.add(decode(jMeasurement));
-
+                sink.accept(decode((JsonObject) value));
             }
-            return measurements.toArray(new Measurement[0]);
         }
 
         private Measurement decode(final JsonObject jsonObject) {
@@ -73,7 +131,9 @@ public class JsonEncoding {
             builder.timestamp(jsonObject.getLong("timestamp"));
 
             JsonObject tags = jsonObject.getJsonObject("tags");
-            tags.forEach(e -> builder.tag(e.getKey(), String.valueOf(e.getValue())));
+            tags.forEach(e -> builder.tag(e.getKey(),
+                                          e.getValue() instanceof String ? (String) e.getValue()
+                                                                         : String.valueOf(e.getValue())));
 
             JsonObject value = jsonObject.getJsonObject("values");
             value.forEach(e -> builder.value(e.getKey(), e.getValue()));
@@ -81,4 +141,181 @@ public class JsonEncoding {
             return builder.build();
         }
     }
+
+    private static class StreamingEncoder implements BufferEncoder {
+
+        @Override
+        public Buffer encode(final Collection<Measurement> m) {
+
+            return encodeTo(m, Buffer.buffer(m.size() * 128));
+        }
+
+        @Override
+        public Buffer encodeTo(final Collection<Measurement> m, final Buffer buffer) {
+
+            try (JsonGenerator json = FACTORY.createGenerator(new BufferOutputStream(buffer))) {
+                json.writeStartArray();
+                for (Measurement measurement : m) {
+                    write(json, measurement);
+                }
+                json.writeEndArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return buffer;
+        }
+
+        private static void write(JsonGenerator json, Measurement m) throws IOException {
+
+            json.writeStartObject();
+            json.writeStringField("name", m.getName());
+            json.writeNumberField("timestamp", m.getTimestamp());
+            json.writeObjectFieldStart("tags");
+            final SeriesKey key = m.seriesKey();
+            for (int i = 0, len = key.tagCount(); i < len; i++) {
+                json.writeStringField(key.getTagKey(i), key.getTagValue(i));
+            }
+            json.writeEndObject();
+            json.writeObjectFieldStart("values");
+            for (int i = 0, len = m.valueCount(); i < len; i++) {
+                json.writeFieldName(m.getValueName(i));
+                switch (m.getValueType(i)) {
+                    case INTEGER:
+                    case LONG:
+                        json.writeNumber(m.getRawValue(i));
+                        break;
+                    case FLOAT:
+                        json.writeNumber(Float.intBitsToFloat((int) m.getRawValue(i)));
+                        break;
+                    case DOUBLE:
+                        json.writeNumber(Double.longBitsToDouble(m.getRawValue(i)));
+                        break;
+                    case BOOLEAN:
+                        json.writeBoolean(m.getRawValue(i) != 0);
+                        break;
+                    default:
+                        json.writeString((String) m.getValue(i));
+                }
+            }
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+    }
+
+    private static class StreamingDecoder implements Decoder<Buffer> {
+
+        @Override
+        public Measurement[] decode(final Buffer encodedMeasurement) {
+
+            final List<Measurement> measurements = new ArrayList<>();
+            decode(encodedMeasurement, measurements::add);
+            return measurements.toArray(new Measurement[0]);
+        }
+
+        @Override
+        public void decode(final Buffer encodedMeasurement, final Consumer<Measurement> sink) {
+
+            try (JsonParser json = createParser(encodedMeasurement.getByteBuf())) {
+                if (json.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IllegalArgumentException("Invalid structure, Array expected");
+                }
+                JsonToken token;
+                while ((token = json.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token != JsonToken.START_OBJECT) {
+                        throw new IllegalArgumentException("Invalid array structure, Object expected");
+                    }
+                    sink.accept(read(json));
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid json", e);
+            }
+        }
+
+        /**
+         * Parses heap buffers from their backing array, other buffers are read as stream.
+         */
+        private static JsonParser createParser(ByteBuf data) throws IOException {
+
+            if (data.hasArray()) {
+                return FACTORY.createParser(data.array(), data.arrayOffset() + data.readerIndex(), data.readableBytes());
+            }
+            return FACTORY.createParser((InputStream) new ByteBufInputStream(data));
+        }
+
+        private static Measurement read(JsonParser json) throws IOException {
+
+            final Measurement.Builder builder = Measurement.builder();
+            while (json.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = json.getCurrentName();
+                final JsonToken token = json.nextToken();
+                if ("name".equals(field)) {
+                    builder.name(json.getValueAsString());
+                } else if ("timestamp".equals(field)) {
+                    builder.timestamp(json.getValueAsLong());
+                } else if ("tags".equals(field) && token == JsonToken.START_OBJECT) {
+                    while (json.nextToken() == JsonToken.FIELD_NAME) {
+                        final String tag = json.getCurrentName();
+                        json.nextToken();
+                        builder.tag(tag, json.getValueAsString());
+                    }
+                } else if ("values".equals(field) && token == JsonToken.START_OBJECT) {
+                    while (json.nextToken() == JsonToken.FIELD_NAME) {
+                        final String name = json.getCurrentName();
+                        readValue(json, json.nextToken(), name, builder);
+                    }
+                } else {
+                    json.skipChildren();
+                }
+            }
+            return builder.build();
+        }
+
+        private static void readValue(JsonParser json, JsonToken token, String name, Measurement.Builder builder)
+                throws IOException {
+
+            switch (token) {
+                case VALUE_NUMBER_INT:
+                    if (json.getNumberType() == JsonParser.NumberType.INT) {
+                        builder.value(name, json.getIntValue());
+                    } else {
+                        builder.value(name, json.getLongValue());
+                    }
+                    break;
+                case VALUE_NUMBER_FLOAT:
+                    builder.value(name, json.getDoubleValue());
+                    break;
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    builder.value(name, json.getBooleanValue());
+                    break;
+                case VALUE_STRING:
+                    builder.value(name, json.getText());
+                    break;
+                default:
+                    json.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Appends the written bytes to a buffer. The generator buffers its output, so the buffer is appended in chunks.
+     */
+    private static class BufferOutputStream extends OutputStream {
+
+        private final Buffer buffer;
+
+        BufferOutputStream(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.appendByte((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.appendBytes(b, off, len);
+        }
+    }
 }
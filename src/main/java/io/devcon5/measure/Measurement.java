@@ -18,16 +18,22 @@
 
 package io.devcon5.measure;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Objects;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.SortedMap;
-import java.util.TreeMap;
 
 /**
  * A Measurement represents a collection of values at a specific point in time. The measurement may contain
  * several tags that allow classification/categorizations of these timepoints.
+ * <p>
+ * The values are stored in primitive arrays sorted by the value name. Numbers and booleans are kept in their
+ * raw long representation (see {@link ValueType}), strings are kept in a separate array that is only
+ * created if the measurement contains string values.
  */
 public class Measurement {
 
@@ -35,40 +41,43 @@ public class Measurement {
      * Timestamp in nanoseconds
      */
     final long timestamp;
+
     /**
-     * The name of the measurement. Must not be null.
+     * The series of this measurement, consisting of the name and the tags.
      */
-    final String name;
+    final SeriesKey series;
 
     /**
-     * A sorted list of key-value pairs representing tags
+     * The names of the values, sorted
      */
-    final SortedMap<String, String> tags;
+    final String[] valueNames;
 
     /**
-     * The actual values of these measurements. The values could be
-     * <ul>
-     * <li>Boolean</li>
-     * <li>Integer</li>
-     * <li>Long</li>
-     * <li>Float</li>
-     * <li>Double</li>
-     * <li>String</li>
-     * </ul>
+     * The type codes of the values, see {@link ValueType}
      */
-    final Map<String, Object> values;
+    final byte[] valueTypes;
+
+    /**
+     * The values in raw representation, strings are not contained.
+     */
+    final long[] rawValues;
+
+    /**
+     * The string values at the positions of string values, null if there are no string values.
+     */
+    final String[] stringValues;
 
     Measurement(Measurement.Builder builder) {
 
         this.timestamp = builder.timestamp;
-        this.name = builder.name;
-        this.tags = Collections.unmodifiableSortedMap(new TreeMap<>(builder.tags));
-
-        final Map<String, Object> values = new HashMap<>();
-        values.putAll(builder.booleanValues);
-        values.putAll(builder.numberValues);
-        values.putAll(builder.stringValues);
-        this.values = Collections.unmodifiableMap(new TreeMap<>(values));
+        this.series = SeriesKey.of(builder.name, builder.tagKeys, builder.tagValues, builder.tagCount);
+
+        builder.sortValues();
+        final int count = builder.valueCount;
+        this.valueNames = Arrays.copyOf(builder.valueNames, count);
+        this.valueTypes = Arrays.copyOf(builder.valueTypes, count);
+        this.rawValues = Arrays.copyOf(builder.rawValues, count);
+        this.stringValues = builder.stringValues == null ? null : Arrays.copyOf(builder.stringValues, count);
     }
 
     /**
@@ -88,7 +97,7 @@ public class Measurement {
      */
     public String getName() {
 
-        return name;
+        return series.getName();
     }
 
     /**
@@ -98,7 +107,17 @@ public class Measurement {
      */
     public SortedMap<String, String> getTags() {
 
-        return tags;
+        return series.getTags();
+    }
+
+    /**
+     * The series of this measurement. Measurements of the same series share the same series key instance.
+     *
+     * @return the interned series key
+     */
+    public SeriesKey seriesKey() {
+
+        return series;
     }
 
     /**
@@ -111,22 +130,160 @@ public class Measurement {
      * <li>Double</li>
      * <li>String</li>
      * </ul>
+     * The map is a view on the values of this measurement, the values are boxed on access. Use the typed
+     * accessors to read single values without boxing.
      *
-     * @return an unmodifiable map containing the key-value pairs.
+     * @return an unmodifiable map containing the key-value pairs, sorted by key.
      */
     public Map<String, Object> getValues() {
 
-        return values;
+        return new ValuesView();
+    }
+
+    /**
+     * The number of values of this measurement
+     *
+     * @return the number of values
+     */
+    public int valueCount() {
+
+        return valueNames.length;
+    }
+
+    /**
+     * The name of the value at the given position. The values are sorted by name.
+     *
+     * @param index
+     *         the position of the value
+     *
+     * @return the name of the value
+     */
+    public String getValueName(int index) {
+
+        return valueNames[index];
+    }
+
+    public ValueType getValueType(int index) {
+
+        return ValueType.fromCode(valueTypes[index]);
+    }
+
+    /**
+     * The raw representation of the value at the given position, see {@link ValueType}
+     *
+     * @param index
+     *         the position of the value
+     *
+     * @return the raw value
+     *
+     * @throws java.lang.IllegalArgumentException
+     *         if the value is a string
+     */
+    public long getRawValue(int index) {
+
+        if (valueTypes[index] == ValueType.STRING.code()) {
+            throw new IllegalArgumentException("Value " + valueNames[index] + " is a string");
+        }
+        return rawValues[index];
+    }
+
+    /**
+     * The value at the given position as object of its type
+     *
+     * @param index
+     *         the position of the value
+     *
+     * @return the boxed value
+     */
+    public Object getValue(int index) {
+
+        final ValueType type = getValueType(index);
+        return type == ValueType.STRING ? stringValues[index] : type.fromRaw(rawValues[index]);
+    }
+
+    public boolean hasValue(String name) {
+
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * The numeric value with the given name as long. Floating point values are truncated.
+     *
+     * @param name
+     *         the name of the value
+     *
+     * @return the value
+     *
+     * @throws java.util.NoSuchElementException
+     *         if there is no value with that name
+     * @throws java.lang.IllegalArgumentException
+     *         if the value is not numeric
+     */
+    public long getLong(String name) {
+
+        final int index = requireIndex(name);
+        return getValueType(index).rawToLong(getRawValue(index));
+    }
+
+    /**
+     * The numeric value with the given name as double.
+     *
+     * @param name
+     *         the name of the value
+     *
+     * @return the value
+     *
+     * @throws java.util.NoSuchElementException
+     *         if there is no value with that name
+     * @throws java.lang.IllegalArgumentException
+     *         if the value is not numeric
+     */
+    public double getDouble(String name) {
+
+        final int index = requireIndex(name);
+        return getValueType(index).rawToDouble(getRawValue(index));
+    }
+
+    public boolean getBoolean(String name) {
+
+        final int index = requireIndex(name);
+        if (valueTypes[index] != ValueType.BOOLEAN.code()) {
+            throw new IllegalArgumentException("Value " + name + " is not a boolean");
+        }
+        return rawValues[index] != 0;
+    }
+
+    public String getString(String name) {
+
+        final int index = requireIndex(name);
+        if (valueTypes[index] != ValueType.STRING.code()) {
+            throw new IllegalArgumentException("Value " + name + " is not a string");
+        }
+        return stringValues[index];
+    }
+
+    private int indexOf(Object name) {
+
+        return name instanceof String ? Arrays.binarySearch(valueNames, name) : -1;
+    }
+
+    private int requireIndex(String name) {
+
+        final int index = indexOf(name);
+        if (index < 0) {
+            throw new NoSuchElementException("No value " + name);
+        }
+        return index;
     }
 
     @Override
     public String toString() {
 
         final StringBuilder sb = new StringBuilder("Measurement{");
-        sb.append("name='").append(name).append('\'');
+        sb.append("name='").append(series.getName()).append('\'');
         sb.append(", timestamp=").append(timestamp);
-        sb.append(", tags=").append(tags);
-        sb.append(", values=").append(values);
+        sb.append(", tags=").append(series.getTags());
+        sb.append(", values=").append(getValues());
         sb.append('}');
         return sb.toString();
     }
@@ -142,15 +299,20 @@ public class Measurement {
         }
         final Measurement that = (Measurement) o;
         return timestamp == that.timestamp
-                && Objects.equals(name, that.name)
-                && Objects.equals(tags, that.tags)
-                && Objects.equals(values, that.values);
+                && series.equals(that.series)
+                && Arrays.equals(valueNames, that.valueNames)
+                && Arrays.equals(valueTypes, that.valueTypes)
+                && Arrays.equals(rawValues, that.rawValues)
+                && Arrays.equals(stringValues, that.stringValues);
     }
 
     @Override
     public int hashCode() {
 
-        return Objects.hash(timestamp, name, tags, values);
+        int result = 31 * series.hashCode() + Long.hashCode(timestamp);
+        result = 31 * result + Arrays.hashCode(valueNames);
+        result = 31 * result + Arrays.hashCode(rawValues);
+        return 31 * result + Arrays.hashCode(stringValues);
     }
 
     /**
@@ -163,15 +325,82 @@ public class Measurement {
         return new Builder();
     }
 
+    /**
+     * Read-only map view on the values.
+     */
+    private class ValuesView extends AbstractMap<String, Object> {
+
+        @Override
+        public int size() {
+
+            return valueNames.length;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public Object get(final Object key) {
+
+            final int index = indexOf(key);
+            return index < 0 ? null : getValue(index);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+
+            return new AbstractSet<Entry<String, Object>>() {
+
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+
+                    return new Iterator<Entry<String, Object>>() {
+
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+
+                            return next < valueNames.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+
+                            if (next >= valueNames.length) {
+                                throw new NoSuchElementException();
+                            }
+                            final int index = next++;
+                            return new SimpleImmutableEntry<>(valueNames[index], getValue(index));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+
+                    return valueNames.length;
+                }
+            };
+        }
+    }
+
     public static class Builder {
 
         private String name;
         private long timestamp;
-        private Map<String, String> tags = new HashMap<>();
+        private int tagCount;
+        private String[] tagKeys = new String[4];
+        private String[] tagValues = new String[4];
 
-        private Map<String, Number> numberValues = new HashMap<>();
-        private Map<String, Boolean> booleanValues = new HashMap<>();
-        private Map<String, String> stringValues = new HashMap<>();
+        private int valueCount;
+        private String[] valueNames = new String[8];
+        private byte[] valueTypes = new byte[8];
+        private long[] rawValues = new long[8];
+        private String[] stringValues;
 
         public Builder name(String name) {
 
@@ -187,67 +416,155 @@ public class Measurement {
 
         public Builder tag(String name, String value) {
             if(value != null) {
-                this.tags.put(name, value);
+                int index = 0;
+                while (index < tagCount && !tagKeys[index].equals(name)) {
+                    index++;
+                }
+                if (index == tagCount) {
+                    if (tagCount == tagKeys.length) {
+                        tagKeys = Arrays.copyOf(tagKeys, tagCount * 2);
+                        tagValues = Arrays.copyOf(tagValues, tagCount * 2);
+                    }
+                    tagKeys[index] = name;
+                    tagCount++;
+                }
+                tagValues[index] = value;
             }
             return this;
         }
 
         public Builder value(String name, String value) {
             if(value != null) {
-                this.stringValues.put(name, String.valueOf(value));
+                final int index = put(name, ValueType.STRING, 0);
+                if (stringValues == null) {
+                    stringValues = new String[valueNames.length];
+                }
+                stringValues[index] = value;
             }
             return this;
         }
 
         public Builder value(String name, Boolean value) {
             if(value != null) {
-                this.booleanValues.put(name, value);
+                put(name, ValueType.BOOLEAN, value ? 1 : 0);
             }
             return this;
         }
 
         public Builder value(String name, Integer value) {
             if(value != null) {
-                this.numberValues.put(name, value);
+                put(name, ValueType.INTEGER, value);
             }
             return this;
         }
 
         public Builder value(String name, Long value) {
             if(value != null) {
-                this.numberValues.put(name, value);
+                put(name, ValueType.LONG, value);
             }
             return this;
         }
 
         public Builder value(String name, Double value) {
             if(value != null) {
-                this.numberValues.put(name, value);
+                put(name, ValueType.DOUBLE, Double.doubleToRawLongBits(value));
             }
             return this;
         }
 
         public Builder value(String name, Float value) {
             if(value != null) {
-                this.numberValues.put(name, value);
+                put(name, ValueType.FLOAT, Float.floatToRawIntBits(value));
+            }
+            return this;
+        }
+
+        /**
+         * Adds a value in its raw representation, see {@link ValueType}
+         *
+         * @param name
+         *         the name of the value
+         * @param type
+         *         the type of the value, must not be {@link ValueType#STRING}
+         * @param raw
+         *         the raw representation of the value
+         *
+         * @return this builder
+         */
+        public Builder rawValue(String name, ValueType type, long raw) {
+
+            if (type == ValueType.STRING) {
+                throw new IllegalArgumentException("Strings have no raw representation");
             }
+            put(name, type, raw);
             return this;
         }
 
         //method is only required for decoding
         public Builder value(final String name, final Object rawValue) {
 
-            if (rawValue instanceof Number) {
-                this.numberValues.put(name, (Number) rawValue);
-                return this;
-            } else if (rawValue instanceof Boolean) {
-                return value(name, (Boolean) rawValue);
-            } else if (rawValue instanceof String) {
+            final ValueType type = ValueType.of(rawValue);
+            if (type == ValueType.STRING) {
                 return value(name, (String) rawValue);
             }
-            throw new IllegalArgumentException("Unsupported value type " + (rawValue == null
-                                                                            ? "null"
-                                                                            : rawValue.getClass()));
+            put(name, type, type.toRaw(rawValue));
+            return this;
+        }
+
+        private int put(String name, ValueType type, long raw) {
+
+            int index = 0;
+            while (index < valueCount && !valueNames[index].equals(name)) {
+                index++;
+            }
+            if (index == valueCount) {
+                if (valueCount == valueNames.length) {
+                    final int capacity = valueCount * 2;
+                    valueNames = Arrays.copyOf(valueNames, capacity);
+                    valueTypes = Arrays.copyOf(valueTypes, capacity);
+                    rawValues = Arrays.copyOf(rawValues, capacity);
+                    if (stringValues != null) {
+                        stringValues = Arrays.copyOf(stringValues, capacity);
+                    }
+                }
+                valueNames[index] = name;
+                valueCount++;
+            }
+            valueTypes[index] = type.code();
+            rawValues[index] = raw;
+            if (stringValues != null) {
+                stringValues[index] = null;
+            }
+            return index;
+        }
+
+        /**
+         * Sorts the values by name. Measurements only have a few values, so insertion sort is sufficient.
+         */
+        private void sortValues() {
+
+            for (int i = 1; i < valueCount; i++) {
+                final String name = valueNames[i];
+                final byte type = valueTypes[i];
+                final long raw = rawValues[i];
+                final String string = stringValues == null ? null : stringValues[i];
+                int j = i - 1;
+                while (j >= 0 && valueNames[j].compareTo(name) > 0) {
+                    valueNames[j + 1] = valueNames[j];
+                    valueTypes[j + 1] = valueTypes[j];
+                    rawValues[j + 1] = rawValues[j];
+                    if (stringValues != null) {
+                        stringValues[j + 1] = stringValues[j];
+                    }
+                    j--;
+                }
+                valueNames[j + 1] = name;
+                valueTypes[j + 1] = type;
+                rawValues[j + 1] = raw;
+                if (stringValues != null) {
+                    stringValues[j + 1] = string;
+                }
+            }
         }
 
         /**
@@ -269,7 +586,7 @@ public class Measurement {
             if (timestamp == 0) {
                 timestamp = System.currentTimeMillis() * 1_000_000;
             }
-            if (numberValues.isEmpty() && booleanValues.isEmpty() && stringValues.isEmpty()) {
+            if (valueCount == 0) {
                 throw new IllegalArgumentException("no values recorded");
             }
 
@@ -277,12 +594,3 @@ public class Measurement {
         }
     }
 }
-
-
-
-
-
-
-
-
-
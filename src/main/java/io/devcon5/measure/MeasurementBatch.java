@@ -0,0 +1,153 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.measure;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An immutable batch of measurements. Batches are sent over the eventbus using the {@link MeasurementBatchCodec},
+ * so measurements published locally are passed by reference to the digesters without being encoded.
+ * <p>
+ * The batch only holds references to the measurements, which are immutable themselves, so handing a batch from
+ * a collector to a digester or processor does not copy or rebuild any measurement.
+ */
+public final class MeasurementBatch implements Iterable<Measurement> {
+
+    private static final MeasurementBatch EMPTY = new MeasurementBatch(new Measurement[0]);
+
+    private final Measurement[] measurements;
+
+    private MeasurementBatch(Measurement[] measurements) {
+
+        this.measurements = measurements;
+    }
+
+    /**
+     * Creates a batch of the given measurements.
+     *
+     * @param measurements
+     *         the measurements of the batch. The array is copied.
+     *
+     * @return a new batch
+     */
+    public static MeasurementBatch of(Measurement... measurements) {
+
+        return measurements.length == 0 ? EMPTY : new MeasurementBatch(measurements.clone());
+    }
+
+    public static MeasurementBatch of(Collection<Measurement> measurements) {
+
+        return measurements.isEmpty() ? EMPTY : new MeasurementBatch(measurements.toArray(new Measurement[0]));
+    }
+
+    /**
+     * Creates a batch that takes ownership of the array, used by decoders that created the array themselves.
+     *
+     * @param measurements
+     *         the measurements of the batch, the array must not be modified afterwards
+     *
+     * @return a new batch
+     */
+    static MeasurementBatch wrap(Measurement[] measurements) {
+
+        return measurements.length == 0 ? EMPTY : new MeasurementBatch(measurements);
+    }
+
+    public int size() {
+
+        return measurements.length;
+    }
+
+    public boolean isEmpty() {
+
+        return measurements.length == 0;
+    }
+
+    public Measurement get(int index) {
+
+        return measurements[index];
+    }
+
+    /**
+     * The measurements of this batch as array.
+     *
+     * @return a copy of the array, the measurements are not copied
+     */
+    public Measurement[] toArray() {
+
+        return measurements.clone();
+    }
+
+    /**
+     * The measurements of this batch as list.
+     *
+     * @return an unmodifiable view on the measurements
+     */
+    public List<Measurement> asList() {
+
+        return new AbstractList<Measurement>() {
+
+            @Override
+            public Measurement get(int index) {
+
+                return measurements[index];
+            }
+
+            @Override
+            public int size() {
+
+                return measurements.length;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Measurement> iterator() {
+
+        return asList().iterator();
+    }
+
+    @Override
+    public String toString() {
+
+        return "MeasurementBatch" + Arrays.toString(measurements);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return Arrays.equals(measurements, ((MeasurementBatch) o).measurements);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Arrays.hashCode(measurements);
+    }
+}
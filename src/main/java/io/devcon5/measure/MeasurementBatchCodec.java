@@ -0,0 +1,83 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.measure;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+/**
+ * Eventbus codec for {@link MeasurementBatch}. Within the same Vert.x instance, batches are immutable and passed
+ * by reference. Only if the eventbus is clustered, batches are written using the {@link BinaryEncoding}.
+ */
+public class MeasurementBatchCodec implements MessageCodec<MeasurementBatch, MeasurementBatch> {
+
+    public static final String NAME = "measurementBatch";
+
+    private final Encoder<Buffer> encoder = BinaryEncoding.encoder();
+    private final Decoder<Buffer> decoder = BinaryEncoding.decoder();
+
+    /**
+     * Registers the codec as default codec for {@link MeasurementBatch} on the eventbus. Every verticle sending
+     * or receiving batches should register the codec, registering it more than once has no effect.
+     *
+     * @param vertx
+     *         the vertx instance whose eventbus should use the codec
+     */
+    public static void register(Vertx vertx) {
+
+        try {
+            vertx.eventBus().registerDefaultCodec(MeasurementBatch.class, new MeasurementBatchCodec());
+        } catch (IllegalStateException e) {
+            //already registered
+        }
+    }
+
+    @Override
+    public void encodeToWire(final Buffer buffer, final MeasurementBatch batch) {
+
+        final Buffer encoded = encoder.encode(batch.asList());
+        buffer.appendInt(encoded.length()).appendBuffer(encoded);
+    }
+
+    @Override
+    public MeasurementBatch decodeFromWire(final int pos, final Buffer buffer) {
+
+        final int length = buffer.getInt(pos);
+        return decoder.decodeBatch(buffer.getBuffer(pos + 4, pos + 4 + length));
+    }
+
+    @Override
+    public MeasurementBatch transform(final MeasurementBatch batch) {
+
+        return batch;
+    }
+
+    @Override
+    public String name() {
+
+        return NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+
+        return -1;
+    }
+}
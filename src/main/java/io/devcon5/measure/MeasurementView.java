@@ -0,0 +1,496 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.measure;
+
+import java.util.NoSuchElementException;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Read-only view of the measurements of a buffer in the version 2 {@link BinaryEncoding}. The view is a flyweight
+ * that is moved from one measurement to the next with {@link #next()}. Moving the view only reads the structure of
+ * the measurement, name, tags and values are read from the buffer when they are accessed, and a {@link Measurement}
+ * is only created by {@link #toMeasurement()}. So stages that only filter or route measurements by name or tags
+ * neither decode strings nor create objects for the measurements they don't need.
+ * <p>
+ * The view is not thread-safe and the buffer must not be modified while it is viewed.
+ * <pre>
+ *     MeasurementView view = MeasurementView.of(buffer);
+ *     while (view.next()) {
+ *         if (view.nameEquals("cpu") &amp;&amp; view.tagEquals("host", "db1")) {
+ *             view.copyTo(filtered);
+ *         }
+ *     }
+ * </pre>
+ */
+public final class MeasurementView {
+
+    private final Buffer buf;
+    private final BufferCursor cursor;
+    private int remainingInBlock;
+
+    private int start = -1;
+    private int end;
+    private int nameOffset;
+    private int nameLength;
+    private long timestamp;
+    private int tagCount;
+    private int tagsOffset;
+    private int valueCount;
+    private int valuesOffset;
+
+    private String name;
+
+    private MeasurementView(Buffer buf) {
+
+        this.buf = buf;
+        this.cursor = new BufferCursor(buf, 0);
+    }
+
+    /**
+     * Creates a view of the measurements of the buffer. The view is positioned before the first measurement.
+     *
+     * @param buf
+     *         the buffer containing one or more blocks in the version 2 binary encoding
+     *
+     * @return the view
+     */
+    public static MeasurementView of(Buffer buf) {
+
+        return new MeasurementView(buf);
+    }
+
+    /**
+     * Checks, if the buffer can be viewed. Only the version 2 binary encoding can be viewed, buffers in the older
+     * delimiter-based encoding have to be decoded.
+     *
+     * @param buf
+     *         the buffer to check
+     *
+     * @return <code>true</code> if the buffer is empty or starts with a version 2 block
+     */
+    public static boolean isViewable(Buffer buf) {
+
+        return buf.length() == 0 || buf.getByte(0) == BinaryEncoding.VERSION_2;
+    }
+
+    /**
+     * Creates a version 2 block of measurements that were copied with {@link #copyTo(Buffer)}.
+     *
+     * @param measurements
+     *         the copied measurements
+     * @param count
+     *         the number of copied measurements
+     *
+     * @return the encoded block
+     */
+    public static Buffer toBlock(Buffer measurements, int count) {
+
+        final Buffer block = Buffer.buffer(measurements.length() + 6).appendByte(BinaryEncoding.VERSION_2);
+        return BufferCursor.writeVarInt(block, count).appendBuffer(measurements);
+    }
+
+    /**
+     * Moves the view to the next measurement.
+     *
+     * @return <code>true</code> if the view is positioned on a measurement, <code>false</code> if there are no more
+     * measurements
+     *
+     * @throws IllegalArgumentException
+     *         if the buffer is not in the version 2 binary encoding or its structure is invalid
+     */
+    public boolean next() {
+
+        try {
+            if (start >= 0) {
+                //accessors move the cursor within the current measurement
+                cursor.position(end);
+            }
+            while (remainingInBlock == 0) {
+                if (!cursor.hasRemaining()) {
+                    start = -1;
+                    return false;
+                }
+                if (cursor.readByte() != BinaryEncoding.VERSION_2) {
+                    throw new IllegalArgumentException("Only version 2 of the binary encoding can be viewed");
+                }
+                remainingInBlock = cursor.readVarInt();
+            }
+            remainingInBlock--;
+            start = cursor.position();
+            nameLength = cursor.readVarInt();
+            nameOffset = cursor.position();
+            cursor.position(nameOffset + nameLength);
+            timestamp = cursor.readVarLong();
+            tagCount = cursor.readVarInt();
+            tagsOffset = cursor.position();
+            for (int i = 0; i < tagCount; i++) {
+                cursor.skipString();
+                cursor.skipString();
+            }
+            valueCount = cursor.readVarInt();
+            valuesOffset = cursor.position();
+            for (int i = 0; i < valueCount; i++) {
+                cursor.skipString();
+                skipValue(ValueType.fromCode(cursor.readByte()));
+            }
+            end = cursor.position();
+            if (end > buf.length()) {
+                throw new IllegalArgumentException("Buffer has invalid structure");
+            }
+            name = null;
+            return true;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Buffer has invalid structure", e);
+        }
+    }
+
+    public String getName() {
+
+        checkPosition();
+        if (name == null) {
+            name = buf.getString(nameOffset, nameOffset + nameLength, "UTF-8");
+        }
+        return name;
+    }
+
+    /**
+     * Compares the name of the measurement without decoding it.
+     *
+     * @param name
+     *         the name to compare with
+     *
+     * @return <code>true</code> if the measurement has the given name
+     */
+    public boolean nameEquals(String name) {
+
+        checkPosition();
+        return equals(nameOffset, nameLength, name);
+    }
+
+    public long getTimestamp() {
+
+        checkPosition();
+        return timestamp;
+    }
+
+    public int tagCount() {
+
+        checkPosition();
+        return tagCount;
+    }
+
+    /**
+     * Reads the value of a tag. Only the value of the matching tag is decoded.
+     *
+     * @param key
+     *         the tag key
+     *
+     * @return the tag value or <code>null</code> if the measurement has no such tag
+     */
+    public String getTag(String key) {
+
+        final int offset = findTag(key);
+        if (offset < 0) {
+            return null;
+        }
+        cursor.position(offset);
+        return cursor.readString();
+    }
+
+    /**
+     * Compares the value of a tag without decoding it.
+     *
+     * @param key
+     *         the tag key
+     * @param value
+     *         the expected value
+     *
+     * @return <code>true</code> if the measurement has the tag with the given value
+     */
+    public boolean tagEquals(String key, String value) {
+
+        final int offset = findTag(key);
+        if (offset < 0) {
+            return false;
+        }
+        cursor.position(offset);
+        final int length = cursor.readVarInt();
+        return equals(cursor.position(), length, value);
+    }
+
+    public int valueCount() {
+
+        checkPosition();
+        return valueCount;
+    }
+
+    /**
+     * Reads the type of a value.
+     *
+     * @param name
+     *         the name of the value
+     *
+     * @return the type or <code>null</code> if the measurement has no such value
+     */
+    public ValueType getValueType(String name) {
+
+        final int offset = findValue(name);
+        return offset < 0 ? null : ValueType.fromCode(buf.getByte(offset));
+    }
+
+    /**
+     * Reads a numeric value as double.
+     *
+     * @param name
+     *         the name of the value
+     *
+     * @return the value or {@link Double#NaN} if the measurement has no such value or it is not numeric
+     */
+    public double getDouble(String name) {
+
+        final int offset = findValue(name);
+        if (offset < 0) {
+            return Double.NaN;
+        }
+        cursor.position(offset);
+        final ValueType type = ValueType.fromCode(cursor.readByte());
+        switch (type) {
+            case INTEGER:
+                return cursor.readZigZagInt();
+            case LONG:
+                return cursor.readZigZagLong();
+            case FLOAT:
+                return cursor.readFloat();
+            case DOUBLE:
+                return cursor.readDouble();
+            default:
+                return Double.NaN;
+        }
+    }
+
+    /**
+     * Calculates the 64 bit hash of the series of the measurement, which is the same as
+     * {@link SeriesKey#longHash()} of the decoded measurement. For measurements with ASCII names and tags in
+     * order the hash is calculated from the encoded bytes, otherwise the series key is decoded.
+     *
+     * @return the 64 bit hash of the series
+     */
+    public long seriesHash() {
+
+        checkPosition();
+        if (!isAscii(nameOffset, nameLength)) {
+            return seriesKey().longHash();
+        }
+        long hash = hash(SeriesKey.FNV_OFFSET, nameOffset, nameLength);
+        int previousKey = -1;
+        int previousKeyLength = 0;
+        cursor.position(tagsOffset);
+        for (int i = 0; i < tagCount; i++) {
+            final int keyLength = cursor.readVarInt();
+            final int key = cursor.position();
+            cursor.position(key + keyLength);
+            final int valueLength = cursor.readVarInt();
+            final int value = cursor.position();
+            cursor.position(value + valueLength);
+            if (!isAscii(key, keyLength)
+                    || !isAscii(value, valueLength)
+                    || (previousKey >= 0 && compare(previousKey, previousKeyLength, key, keyLength) >= 0)) {
+                //the series key sorts the tags by their string representation
+                return seriesKey().longHash();
+            }
+            hash = hash(hash(hash, key, keyLength), value, valueLength);
+            previousKey = key;
+            previousKeyLength = keyLength;
+        }
+        return hash;
+    }
+
+    /**
+     * Decodes the series of the measurement.
+     *
+     * @return the series key
+     */
+    public SeriesKey seriesKey() {
+
+        checkPosition();
+        final String[] keys = new String[tagCount];
+        final String[] values = new String[tagCount];
+        cursor.position(tagsOffset);
+        for (int i = 0; i < tagCount; i++) {
+            keys[i] = cursor.readString();
+            values[i] = cursor.readString();
+        }
+        return SeriesKey.of(getName(), keys, values, tagCount);
+    }
+
+    /**
+     * Decodes the measurement.
+     *
+     * @return the measurement the view is positioned on
+     */
+    public Measurement toMeasurement() {
+
+        checkPosition();
+        cursor.position(start);
+        return BinaryEncoding.readCompactMeasurement(cursor);
+    }
+
+    /**
+     * Appends the encoded measurement to a buffer without decoding it. The copied measurements can be turned into
+     * an encoded block with {@link #toBlock(Buffer, int)}.
+     *
+     * @param target
+     *         the buffer to append the measurement to
+     *
+     * @return the target buffer
+     */
+    public Buffer copyTo(Buffer target) {
+
+        checkPosition();
+        return target.appendBuffer(buf, start, end - start);
+    }
+
+    private void checkPosition() {
+
+        if (start < 0) {
+            throw new NoSuchElementException("View is not positioned on a measurement");
+        }
+    }
+
+    /**
+     * @return the offset of the length of the tag value, or -1
+     */
+    private int findTag(String key) {
+
+        checkPosition();
+        cursor.position(tagsOffset);
+        for (int i = 0; i < tagCount; i++) {
+            final int length = cursor.readVarInt();
+            final int offset = cursor.position();
+            cursor.position(offset + length);
+            if (equals(offset, length, key)) {
+                return cursor.position();
+            }
+            cursor.skipString();
+        }
+        return -1;
+    }
+
+    /**
+     * @return the offset of the type of the value, or -1
+     */
+    private int findValue(String name) {
+
+        checkPosition();
+        cursor.position(valuesOffset);
+        for (int i = 0; i < valueCount; i++) {
+            final int length = cursor.readVarInt();
+            final int offset = cursor.position();
+            cursor.position(offset + length);
+            if (equals(offset, length, name)) {
+                return cursor.position();
+            }
+            skipValue(ValueType.fromCode(cursor.readByte()));
+        }
+        return -1;
+    }
+
+    private void skipValue(ValueType type) {
+
+        switch (type) {
+            case INTEGER:
+                cursor.readVarInt();
+                break;
+            case LONG:
+                cursor.readVarLong();
+                break;
+            case FLOAT:
+                cursor.position(cursor.position() + 4);
+                break;
+            case DOUBLE:
+                cursor.position(cursor.position() + 8);
+                break;
+            case BOOLEAN:
+                cursor.position(cursor.position() + 1);
+                break;
+            default:
+                cursor.skipString();
+        }
+    }
+
+    /**
+     * Compares UTF-8 encoded bytes with a string. ASCII is compared byte by byte, the bytes are only decoded if they
+     * contain other characters.
+     */
+    private boolean equals(int offset, int length, String s) {
+
+        if (length < s.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            final byte b = buf.getByte(offset + i);
+            if (b < 0) {
+                return s.equals(buf.getString(offset, offset + length, "UTF-8"));
+            }
+            if (i >= s.length() || b != s.charAt(i)) {
+                return false;
+            }
+        }
+        return length == s.length();
+    }
+
+    private int compare(int offset1, int length1, int offset2, int length2) {
+
+        for (int i = 0, len = Math.min(length1, length2); i < len; i++) {
+            final int diff = buf.getByte(offset1 + i) - buf.getByte(offset2 + i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length1 - length2;
+    }
+
+    private boolean isAscii(int offset, int length) {
+
+        for (int i = 0; i < length; i++) {
+            if (buf.getByte(offset + i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Continues the FNV-1a hash of {@link SeriesKey} with ASCII bytes, which are equal to their chars.
+     */
+    private long hash(long hash, int offset, int length) {
+
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ buf.getByte(offset + i)) * SeriesKey.FNV_PRIME;
+        }
+        return hash * SeriesKey.FNV_PRIME;
+    }
+
+    @Override
+    public String toString() {
+
+        return start < 0 ? "MeasurementView{}" : "MeasurementView{" + getName() + "@" + timestamp + "}";
+    }
+}
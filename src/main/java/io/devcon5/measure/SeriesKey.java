@@ -0,0 +1,273 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.measure;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Identifies a series, the combination of a measurement name and its tags. Series keys are immutable and
+ * interned, so all measurements of the same series share one instance. The instance carries its precomputed
+ * hash codes and, once requested, its encoded forms, such as the escaped series part of an Influx line.
+ * <p>
+ * The intern table is bounded, least recently used keys are evicted. Its capacity is set by the system
+ * property <code>io.devcon5.measure.seriesKeyCacheSize</code>, default is 65536. An evicted key remains valid,
+ * it is only no longer shared with new measurements of the same series.
+ */
+public final class SeriesKey {
+
+    private static final SeriesKeyTable TABLE = new SeriesKeyTable(
+            Integer.getInteger("io.devcon5.measure.seriesKeyCacheSize", 65536));
+
+    static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final byte[][] NO_ENCODINGS = new byte[0][];
+
+    private final String name;
+    private final String[] tagKeys;
+    private final String[] tagValues;
+    private final int hash;
+    private final long longHash;
+
+    private volatile SortedMap<String, String> tags;
+    private volatile byte[][] encodings = NO_ENCODINGS;
+
+    private SeriesKey(String name, String[] tagKeys, String[] tagValues) {
+
+        this.name = name;
+        this.tagKeys = tagKeys;
+        this.tagValues = tagValues;
+
+        int h = name.hashCode();
+        long lh = hash(FNV_OFFSET, name);
+        for (int i = 0; i < tagKeys.length; i++) {
+            h = 31 * (31 * h + tagKeys[i].hashCode()) + tagValues[i].hashCode();
+            lh = hash(hash(lh, tagKeys[i]), tagValues[i]);
+        }
+        this.hash = h;
+        this.longHash = lh;
+    }
+
+    /**
+     * Returns the canonical series key for the name and tags.
+     *
+     * @param name
+     *         the name of the measurement
+     * @param tags
+     *         the tags of the measurement
+     *
+     * @return the interned series key
+     */
+    public static SeriesKey of(String name, Map<String, String> tags) {
+
+        final String[] keys = new String[tags.size()];
+        final String[] values = new String[tags.size()];
+        int i = 0;
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            keys[i] = tag.getKey();
+            values[i] = tag.getValue();
+            i++;
+        }
+        return of(name, keys, values, i);
+    }
+
+    /**
+     * Returns the canonical series key for the name and the first <code>count</code> tags of the arrays. The
+     * keys must be unique, the arrays are not modified.
+     *
+     * @param name
+     *         the name of the measurement
+     * @param keys
+     *         the tag keys
+     * @param values
+     *         the tag values, in the same order as the keys
+     * @param count
+     *         the number of tags
+     *
+     * @return the interned series key
+     */
+    public static SeriesKey of(String name, String[] keys, String[] values, int count) {
+
+        final String[] sortedKeys = Arrays.copyOf(keys, count);
+        final String[] sortedValues = Arrays.copyOf(values, count);
+
+        //series only have a few tags, so insertion sort is sufficient
+        for (int i = 1; i < count; i++) {
+            final String key = sortedKeys[i];
+            final String value = sortedValues[i];
+            int j = i - 1;
+            while (j >= 0 && sortedKeys[j].compareTo(key) > 0) {
+                sortedKeys[j + 1] = sortedKeys[j];
+                sortedValues[j + 1] = sortedValues[j];
+                j--;
+            }
+            sortedKeys[j + 1] = key;
+            sortedValues[j + 1] = value;
+        }
+        return TABLE.intern(new SeriesKey(name, sortedKeys, sortedValues));
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    public int tagCount() {
+
+        return tagKeys.length;
+    }
+
+    public String getTagKey(int index) {
+
+        return tagKeys[index];
+    }
+
+    public String getTagValue(int index) {
+
+        return tagValues[index];
+    }
+
+    /**
+     * The tags of the series.
+     *
+     * @return an unmodifiable map of the tags, sorted by key
+     */
+    public SortedMap<String, String> getTags() {
+
+        SortedMap<String, String> tags = this.tags;
+        if (tags == null) {
+            final TreeMap<String, String> map = new TreeMap<>();
+            for (int i = 0; i < tagKeys.length; i++) {
+                map.put(tagKeys[i], tagValues[i]);
+            }
+            tags = Collections.unmodifiableSortedMap(map);
+            this.tags = tags;
+        }
+        return tags;
+    }
+
+    /**
+     * A 64 bit hash of the series, for hashing schemes that need more bits than {@link #hashCode()}.
+     *
+     * @return the precomputed 64 bit FNV-1a hash of name and tags
+     */
+    public long longHash() {
+
+        return longHash;
+    }
+
+    /**
+     * Returns the encoded form of this series key, i.e. the series part of an Influx line. The encoding is computed
+     * once per series key and cached with the key.
+     *
+     * @param encoding
+     *         the encoding
+     *
+     * @return the encoded series, must not be modified
+     */
+    public byte[] encoded(Encoding encoding) {
+
+        final byte[][] current = this.encodings;
+        if (encoding.slot < current.length && current[encoding.slot] != null) {
+            return current[encoding.slot];
+        }
+        final byte[] encoded = encoding.function.apply(this);
+        //concurrent updates may drop an encoding of another slot, which is then computed again
+        final byte[][] updated = Arrays.copyOf(current, Math.max(current.length, encoding.slot + 1));
+        updated[encoding.slot] = encoded;
+        this.encodings = updated;
+        return encoded;
+    }
+
+    private static long hash(long hash, String s) {
+
+        for (int i = 0, len = s.length(); i < len; i++) {
+            hash = (hash ^ s.charAt(i)) * FNV_PRIME;
+        }
+        //separator, so that "ab"+"c" and "a"+"bc" differ
+        return hash * FNV_PRIME;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final SeriesKey that = (SeriesKey) o;
+        return hash == that.hash
+                && longHash == that.longHash
+                && name.equals(that.name)
+                && Arrays.equals(tagKeys, that.tagKeys)
+                && Arrays.equals(tagValues, that.tagValues);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+
+        return name + getTags();
+    }
+
+    /**
+     * An encoding of series keys whose result is cached with each series key. Every encoding takes a slot in the
+     * series keys it is applied to, so encodings must be created once, i.e. as constants, and the encoded form must
+     * only depend on the series key.
+     */
+    public static final class Encoding {
+
+        private static final AtomicInteger SLOTS = new AtomicInteger();
+
+        final int slot;
+        final Function<SeriesKey, byte[]> function;
+
+        private Encoding(Function<SeriesKey, byte[]> function) {
+
+            this.slot = SLOTS.getAndIncrement();
+            this.function = function;
+        }
+
+        /**
+         * Creates an encoding.
+         *
+         * @param function
+         *         the function that encodes a series key
+         *
+         * @return the encoding
+         */
+        public static Encoding of(Function<SeriesKey, byte[]> function) {
+
+            return new Encoding(function);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.measure;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded intern table for {@link SeriesKey}s. The table is split into segments, each being a least recently used
+ * map guarded by its own lock, so lookups of different series from several event loops rarely contend.
+ */
+final class SeriesKeyTable {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    SeriesKeyTable(int capacity) {
+
+        final int segmentCapacity = Math.max(1, capacity / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * Returns the canonical instance for the key. If the table contains no equal key, the key itself becomes the
+     * canonical instance.
+     *
+     * @param key
+     *         the key to intern
+     *
+     * @return the canonical instance
+     */
+    SeriesKey intern(SeriesKey key) {
+
+        final int h = key.hashCode();
+        final Segment segment = segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+        synchronized (segment) {
+            final SeriesKey existing = segment.putIfAbsent(key, key);
+            return existing == null ? key : existing;
+        }
+    }
+
+    int size() {
+
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private static class Segment extends LinkedHashMap<SeriesKey, SeriesKey> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<SeriesKey, SeriesKey> eldest) {
+
+            return size() > capacity;
+        }
+    }
+}
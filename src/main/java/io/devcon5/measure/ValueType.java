@@ -0,0 +1,203 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.measure;
+
+import java.math.BigDecimal;
+
+/**
+ * The types of values a measurement may contain. Each type has a code that is used in the binary encoding and in
+ * the {@link Measurement}. In primitive storage, every value is kept as raw long:
+ * <ul>
+ * <li>integers and longs - the value itself</li>
+ * <li>floats and doubles - the raw bits of the value, see {@link Float#floatToRawIntBits(float)} and
+ * {@link Double#doubleToRawLongBits(double)}</li>
+ * <li>booleans - 1 for true, 0 for false</li>
+ * <li>strings - can not be represented, the storage has to keep them separately</li>
+ * </ul>
+ */
+public enum ValueType {
+
+    INTEGER((byte) 0x01),
+    LONG((byte) 0x02),
+    FLOAT((byte) 0x03),
+    DOUBLE((byte) 0x04),
+    BOOLEAN((byte) 0x05),
+    STRING((byte) 0x06);
+
+    private static final ValueType[] BY_CODE = {null, INTEGER, LONG, FLOAT, DOUBLE, BOOLEAN, STRING};
+
+    private final byte code;
+
+    ValueType(byte code) {
+
+        this.code = code;
+    }
+
+    public byte code() {
+
+        return code;
+    }
+
+    public boolean isNumeric() {
+
+        return this != BOOLEAN && this != STRING;
+    }
+
+    public boolean isFloatingPoint() {
+
+        return this == FLOAT || this == DOUBLE;
+    }
+
+    public static ValueType fromCode(byte code) {
+
+        if (code < 1 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Invalid type indicator: " + code);
+        }
+        return BY_CODE[code];
+    }
+
+    /**
+     * Determines the type of a value object. Integral numbers other than Integer and Long are mapped to the
+     * smallest fitting integer type, any other number is treated as double.
+     *
+     * @param value
+     *         the value to determine the type of
+     *
+     * @return the type of the value
+     *
+     * @throws java.lang.IllegalArgumentException
+     *         if the value is of an unsupported type
+     */
+    public static ValueType of(Object value) {
+
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return INTEGER;
+        } else if (value instanceof Long) {
+            return LONG;
+        } else if (value instanceof Double) {
+            return DOUBLE;
+        } else if (value instanceof Float) {
+            return FLOAT;
+        } else if (value instanceof Boolean) {
+            return BOOLEAN;
+        } else if (value instanceof String) {
+            return STRING;
+        } else if (value instanceof BigDecimal) {
+            return DOUBLE;
+        } else if (value instanceof Number) {
+            return LONG;
+        }
+        throw new IllegalArgumentException("Unsupported value type " + (value == null ? "null" : value.getClass()));
+    }
+
+    /**
+     * Converts a non-string value to its raw long representation.
+     *
+     * @param value
+     *         the value to convert, must be of this type
+     *
+     * @return the raw representation of the value
+     */
+    public long toRaw(Object value) {
+
+        switch (this) {
+            case INTEGER:
+            case LONG:
+                return ((Number) value).longValue();
+            case FLOAT:
+                return Float.floatToRawIntBits(((Number) value).floatValue());
+            case DOUBLE:
+                return Double.doubleToRawLongBits(((Number) value).doubleValue());
+            case BOOLEAN:
+                return (Boolean) value ? 1 : 0;
+            default:
+                throw new IllegalArgumentException("No raw representation for " + this);
+        }
+    }
+
+    /**
+     * Converts a raw long representation of a non-string value back to the value object.
+     *
+     * @param raw
+     *         the raw representation
+     *
+     * @return the boxed value
+     */
+    public Object fromRaw(long raw) {
+
+        switch (this) {
+            case INTEGER:
+                return (int) raw;
+            case LONG:
+                return raw;
+            case FLOAT:
+                return Float.intBitsToFloat((int) raw);
+            case DOUBLE:
+                return Double.longBitsToDouble(raw);
+            case BOOLEAN:
+                return raw != 0;
+            default:
+                throw new IllegalArgumentException("No raw representation for " + this);
+        }
+    }
+
+    /**
+     * Converts a raw representation of a numeric value to a long.
+     *
+     * @param raw
+     *         the raw representation of a value of this type
+     *
+     * @return the value as long, floating point values are truncated
+     */
+    public long rawToLong(long raw) {
+
+        switch (this) {
+            case FLOAT:
+                return (long) Float.intBitsToFloat((int) raw);
+            case DOUBLE:
+                return (long) Double.longBitsToDouble(raw);
+            case STRING:
+                throw new IllegalArgumentException("Not a numeric type " + this);
+            default:
+                return raw;
+        }
+    }
+
+    /**
+     * Converts a raw representation of a numeric value to a double.
+     *
+     * @param raw
+     *         the raw representation of a value of this type
+     *
+     * @return the value as double
+     */
+    public double rawToDouble(long raw) {
+
+        switch (this) {
+            case FLOAT:
+                return Float.intBitsToFloat((int) raw);
+            case DOUBLE:
+                return Double.longBitsToDouble(raw);
+            case STRING:
+                throw new IllegalArgumentException("Not a numeric type " + this);
+            default:
+                return raw;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import io.devcon5.measure.Measurement;
+
+/**
+ * Monotonic counter, reported as the total <code>count</code> since start. Incrementing the counter does not lock
+ * and scales across threads.
+ */
+public class Counter implements Metric {
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+
+        count.increment();
+    }
+
+    public void add(long delta) {
+
+        count.add(delta);
+    }
+
+    public long get() {
+
+        return count.sum();
+    }
+
+    @Override
+    public boolean report(Measurement.Builder measurement) {
+
+        measurement.value("count", count.sum());
+        return true;
+    }
+}
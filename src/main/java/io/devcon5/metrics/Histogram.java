@@ -0,0 +1,133 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.devcon5.measure.Measurement;
+import io.devcon5.measure.ValueType;
+
+/**
+ * Distribution of non-negative values, such as latencies or sizes, since the last report. Values are counted in
+ * buckets of powers of two, percentiles are interpolated within the bucket. Recording a value does not lock. The
+ * report swaps in an empty recorder atomically and reports the values of the previous one, so the reported count,
+ * sum and buckets always stem from the same interval. A value that is recorded while the recorder is swapped may be
+ * missing from the report.
+ * <p>
+ * The histogram is reported with the values <code>count</code>, <code>sum</code>, <code>min</code>,
+ * <code>max</code>, <code>mean</code>, <code>p50</code>, <code>p90</code> and <code>p99</code>. Nothing is reported
+ * for an interval without recorded values.
+ */
+public class Histogram implements Metric {
+
+    private final AtomicReference<Recorder> recorder = new AtomicReference<>(new Recorder());
+
+    /**
+     * Records a value.
+     *
+     * @param value
+     *         the value, negative values are recorded as 0
+     */
+    public void record(long value) {
+
+        recorder.get().record(Math.max(value, 0));
+    }
+
+    /**
+     * Records the time elapsed since a start time in microseconds.
+     *
+     * @param startNanos
+     *         the start time as of {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    @Override
+    public boolean report(Measurement.Builder measurement) {
+
+        final Recorder interval = recorder.getAndSet(new Recorder());
+        final long n = interval.count.sum();
+        final long total = interval.sum.sum();
+        final long lowest = interval.min.get();
+        final long highest = interval.max.get();
+        final long[] counts = new long[interval.buckets.length()];
+        long bucketTotal = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = interval.buckets.get(i);
+            bucketTotal += counts[i];
+        }
+        if (n == 0 || bucketTotal == 0) {
+            return false;
+        }
+        measurement.rawValue("count", ValueType.LONG, n)
+                   .rawValue("sum", ValueType.LONG, total)
+                   .rawValue("min", ValueType.LONG, lowest)
+                   .rawValue("max", ValueType.LONG, highest)
+                   .rawValue("mean", ValueType.DOUBLE, Double.doubleToRawLongBits((double) total / n))
+                   .rawValue("p50", ValueType.LONG, percentile(counts, bucketTotal, 0.5, lowest, highest))
+                   .rawValue("p90", ValueType.LONG, percentile(counts, bucketTotal, 0.9, lowest, highest))
+                   .rawValue("p99", ValueType.LONG, percentile(counts, bucketTotal, 0.99, lowest, highest));
+        return true;
+    }
+
+    private static long percentile(long[] counts, long total, double quantile, long lowest, long highest) {
+
+        final double rank = quantile * total;
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 && seen + counts[i] >= rank) {
+                final long from = i == 0 ? 0 : 1L << (i - 1);
+                final long to = i == 0 ? 0 : (i == 64 ? Long.MAX_VALUE : (1L << i) - 1);
+                final double fraction = (rank - seen) / counts[i];
+                final long value = from + (long) ((to - from) * fraction);
+                return Math.max(lowest, Math.min(highest, value));
+            }
+            seen += counts[i];
+        }
+        return highest;
+    }
+
+    /**
+     * The values recorded within one report interval
+     */
+    private static class Recorder {
+
+        /**
+         * Bucket 0 holds the value 0, bucket i the values from 2^(i-1) to 2^i - 1
+         */
+        final AtomicLongArray buckets = new AtomicLongArray(65);
+        final LongAdder count = new LongAdder();
+        final LongAdder sum = new LongAdder();
+        final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+        void record(long value) {
+
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            count.increment();
+            sum.add(value);
+            min.accumulate(value);
+            max.accumulate(value);
+        }
+    }
+}
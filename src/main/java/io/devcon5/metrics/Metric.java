@@ -0,0 +1,37 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.metrics;
+
+import io.devcon5.measure.Measurement;
+
+/**
+ * A self-instrumentation metric that is reported as a measurement.
+ */
+@FunctionalInterface
+public interface Metric {
+
+    /**
+     * Adds the current values of the metric to the measurement.
+     *
+     * @param measurement
+     *         the builder of the measurement with name and tags already set
+     *
+     * @return <code>true</code> if values were added, <code>false</code> if there is nothing to report
+     */
+    boolean report(Measurement.Builder measurement);
+}
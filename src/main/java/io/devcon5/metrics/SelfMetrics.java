@@ -0,0 +1,153 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import io.devcon5.measure.Measurement;
+import io.devcon5.measure.SeriesKey;
+
+/**
+ * Registry of the self-instrumentation metrics of the collector. Every metric is reported as a measurement whose
+ * name starts with the reserved prefix {@link #PREFIX}, so the metrics flow through the same processors and
+ * digesters as the collected measurements, see {@link SelfMetricsReporter}.
+ * <p>
+ * Metrics are identified by name and tags. Looking up a metric is thread-safe, but components should look up their
+ * metrics once and keep them, so that updating a metric is only an increment on a lock-free counter.
+ */
+public final class SelfMetrics {
+
+    /**
+     * Prefix of the names of all self-instrumentation measurements
+     */
+    public static final String PREFIX = "self.";
+
+    private static final ConcurrentMap<SeriesKey, Metric> METRICS = new ConcurrentHashMap<>();
+
+    private SelfMetrics() {
+
+    }
+
+    /**
+     * Gets or creates a counter.
+     *
+     * @param name
+     *         the name of the metric, without the prefix
+     * @param tags
+     *         pairs of tag names and values
+     *
+     * @return the counter
+     */
+    public static Counter counter(String name, String... tags) {
+
+        return get(name, tags, Counter.class, Counter::new);
+    }
+
+    /**
+     * Gets or creates a histogram.
+     *
+     * @param name
+     *         the name of the metric, without the prefix
+     * @param tags
+     *         pairs of tag names and values
+     *
+     * @return the histogram
+     */
+    public static Histogram histogram(String name, String... tags) {
+
+        return get(name, tags, Histogram.class, Histogram::new);
+    }
+
+    /**
+     * Registers a metric that reports its own values, such as the state of a queue. An existing metric with the
+     * same name and tags is replaced.
+     *
+     * @param name
+     *         the name of the metric, without the prefix
+     * @param metric
+     *         the metric
+     * @param tags
+     *         pairs of tag names and values
+     */
+    public static void register(String name, Metric metric, String... tags) {
+
+        METRICS.put(key(name, tags), metric);
+    }
+
+    /**
+     * Removes a metric.
+     *
+     * @param name
+     *         the name of the metric, without the prefix
+     * @param tags
+     *         pairs of tag names and values
+     */
+    public static void unregister(String name, String... tags) {
+
+        METRICS.remove(key(name, tags));
+    }
+
+    /**
+     * Creates measurements of all metrics that have values to report. Histograms are reset.
+     *
+     * @return the measurements
+     */
+    public static List<Measurement> report() {
+
+        final List<Measurement> measurements = new ArrayList<>(METRICS.size());
+        METRICS.forEach((key, metric) -> {
+            final Measurement.Builder builder = Measurement.builder().name(key.getName());
+            for (int i = 0; i < key.tagCount(); i++) {
+                builder.tag(key.getTagKey(i), key.getTagValue(i));
+            }
+            if (metric.report(builder)) {
+                measurements.add(builder.build());
+            }
+        });
+        return measurements;
+    }
+
+    private static <T extends Metric> T get(String name, String[] tags, Class<T> type, Supplier<T> factory) {
+
+        final Metric metric = METRICS.computeIfAbsent(key(name, tags), k -> factory.get());
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is not a " + type.getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    private static SeriesKey key(String name, String[] tags) {
+
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("tags must be pairs of name and value");
+        }
+        final Map<String, String> tagMap = new HashMap<>();
+        for (int i = 0; i < tags.length; i += 2) {
+            if (tags[i + 1] != null) {
+                tagMap.put(tags[i], tags[i + 1]);
+            }
+        }
+        return SeriesKey.of(PREFIX + name, tagMap);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.devcon5.measure.Digester;
+import io.devcon5.measure.Measurement;
+import io.devcon5.measure.MeasurementBatch;
+import io.devcon5.measure.MeasurementBatchCodec;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.SendContext;
+
+/**
+ * Publishes the self-instrumentation metrics periodically to the digesters and counts the messages sent over the
+ * event bus per address as <code>self.eventbus.messages</code>. Reply addresses are counted as one address
+ * <code>reply</code>. The reporter is deployed by the collector if the configuration contains a
+ * <code>metrics</code> document.
+ * <p>
+ * The reporter is configured with the following properties:
+ * <ul>
+ * <li>interval - the time in ms between two reports, default is 10000</li>
+ * </ul>
+ */
+public class SelfMetricsReporter extends AbstractVerticle {
+
+    public static final long DEFAULT_INTERVAL = 10000L;
+
+    private final Map<String, Counter> messages = new ConcurrentHashMap<>();
+    /**
+     * The event bus of Vert.x 3.5 only accepts interceptors of the raw type, the interception itself is typed
+     */
+    @SuppressWarnings("rawtypes")
+    private final Handler<SendContext> interceptor = this::intercept;
+    private long timer = -1;
+
+    @Override
+    public void start() throws Exception {
+
+        MeasurementBatchCodec.register(vertx);
+        vertx.eventBus().addInterceptor(interceptor);
+        this.timer = vertx.setPeriodic(config().getLong("interval", DEFAULT_INTERVAL), id -> {
+            final List<Measurement> measurements = SelfMetrics.report();
+            if (!measurements.isEmpty()) {
+                vertx.eventBus().publish(Digester.DIGEST_ADDR, MeasurementBatch.of(measurements));
+            }
+        });
+    }
+
+    @Override
+    public void stop() throws Exception {
+
+        if (timer != -1) {
+            vertx.cancelTimer(timer);
+        }
+        vertx.eventBus().removeInterceptor(interceptor);
+    }
+
+    private void intercept(SendContext<?> ctx) {
+
+        final String address = ctx.message().address();
+        messages.computeIfAbsent(isReply(address) ? "reply" : address,
+                                 a -> SelfMetrics.counter("eventbus.messages", "address", a)).increment();
+        ctx.next();
+    }
+
+    private static boolean isReply(String address) {
+
+        return address.isEmpty() || address.startsWith("__vertx.reply") || Character.isDigit(address.charAt(0));
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.processor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import io.devcon5.measure.Measurement;
+import io.devcon5.measure.SeriesKey;
+import io.devcon5.measure.ValueType;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Drops measurements whose values did not change significantly since the last measurement of the same series that
+ * was passed on. A numeric value is considered unchanged if it differs from the last passed value by no more than
+ * the absolute deadband or by no more than the relative deadband, so a change has to exceed both deadbands to be
+ * significant. A change from or to NaN is always significant, any non-numeric value changed if it is not equal. A
+ * measurement is passed on if any of its values changed significantly, or if the previous measurements of the series
+ * were dropped for the number of heartbeat intervals.
+ * <p>
+ * The filter keeps the last passed values per series. The state of a series that received no measurement for the
+ * expiry time is evicted, so the next measurement of the series is passed on. Expiry is based on the time the
+ * measurements arrive at the filter, not on their timestamps, so series with lagging or backfilled timestamps keep
+ * their state.
+ * <p>
+ * The filter is configured with the following properties:
+ * <ul>
+ * <li>deadband - the max absolute difference of a numeric value that is considered unchanged, default is 0</li>
+ * <li>relativeDeadband - the max difference of a numeric value relative to the last passed value that is
+ * considered unchanged, i.e. 0.01 for 1%, default is 0</li>
+ * <li>heartbeat - the number of consecutive measurements of a series that may be dropped, before one is passed on
+ * regardless of its values, default is 10</li>
+ * <li>expiry - the time in ms after which the state of a series without measurements is evicted, default is
+ * 600000</li>
+ * <li>expiryInterval - the interval in ms to check for expired series, default is 60000</li>
+ * </ul>
+ */
+public class DeadbandFilter extends Processor {
+
+    public static final int DEFAULT_HEARTBEAT = 10;
+    public static final long DEFAULT_EXPIRY = 600000L;
+    public static final long DEFAULT_EXPIRY_INTERVAL = 60000L;
+
+    /**
+     * Last passed values per series, keyed by the 64 bit hash of the series
+     */
+    private final LongObjectHashMap<State> states = new LongObjectHashMap<>();
+
+    private double deadband;
+    private double relativeDeadband;
+    private int heartbeat;
+    private long expiryNanos;
+    private long expiryTimer = -1;
+
+    @Override
+    public void start() throws Exception {
+
+        configure(config());
+        super.start();
+        this.expiryTimer = vertx.setPeriodic(config().getLong("expiryInterval", DEFAULT_EXPIRY_INTERVAL),
+                id -> expire(System.nanoTime()));
+    }
+
+    @Override
+    public void stop() throws Exception {
+
+        if (expiryTimer != -1) {
+            vertx.cancelTimer(expiryTimer);
+        }
+    }
+
+    void configure(JsonObject config) {
+
+        this.deadband = config.getDouble("deadband", 0.0);
+        this.relativeDeadband = config.getDouble("relativeDeadband", 0.0);
+        this.heartbeat = config.getInteger("heartbeat", DEFAULT_HEARTBEAT);
+        this.expiryNanos = config.getLong("expiry", DEFAULT_EXPIRY) * 1_000_000;
+        if (deadband < 0 || relativeDeadband < 0) {
+            throw new IllegalArgumentException("deadband must not be negative");
+        }
+        if (expiryNanos <= 0) {
+            throw new IllegalArgumentException("expiry must be positive");
+        }
+    }
+
+    @Override
+    protected void process(Measurement[] measurements) {
+
+        final long now = System.nanoTime();
+        final List<Measurement> passed = new ArrayList<>(measurements.length);
+        for (Measurement m : measurements) {
+            if (accept(m, now)) {
+                passed.add(m);
+            }
+        }
+        emit(passed);
+    }
+
+    /**
+     * Decides whether the measurement is passed on and updates the state of its series.
+     *
+     * @param m
+     *         the measurement
+     * @param now
+     *         the arrival time of the measurement as of {@link System#nanoTime()}, used to expire the series
+     *
+     * @return <code>true</code> if the measurement is passed on
+     */
+    boolean accept(Measurement m, long now) {
+
+        final SeriesKey series = m.seriesKey();
+        final long key = series.longHash();
+        State state = states.get(key);
+        if (state == null || !state.series.equals(series)) {
+            //first measurement of the series or a hash collision, in which case the latest series takes the slot
+            state = new State(series);
+            states.put(key, state);
+            state.update(m);
+            state.lastSeen = now;
+            return true;
+        }
+        state.lastSeen = now;
+        if (state.dropped >= heartbeat || changed(state, m)) {
+            state.update(m);
+            return true;
+        }
+        state.dropped++;
+        return false;
+    }
+
+    /**
+     * Evicts the state of all series that received no measurement within the expiry time.
+     *
+     * @param now
+     *         the current time as of {@link System#nanoTime()}
+     *
+     * @return the number of evicted series
+     */
+    int expire(long now) {
+
+        int evicted = 0;
+        final Iterator<LongObjectMap.PrimitiveEntry<State>> it = states.entries().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().value().lastSeen > expiryNanos) {
+                it.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return the number of series with state
+     */
+    int seriesCount() {
+
+        return states.size();
+    }
+
+    private boolean changed(State last, Measurement m) {
+
+        final int count = m.valueCount();
+        if (count != last.names.length) {
+            return true;
+        }
+        for (int i = 0; i < count; i++) {
+            final ValueType type = m.getValueType(i);
+            if (type != last.types[i] || !m.getValueName(i).equals(last.names[i])) {
+                return true;
+            }
+            if (type == ValueType.STRING) {
+                if (!m.getValue(i).equals(last.strings[i])) {
+                    return true;
+                }
+            } else if (type == ValueType.BOOLEAN) {
+                if (m.getRawValue(i) != last.rawValues[i]) {
+                    return true;
+                }
+            } else {
+                final double previous = type.rawToDouble(last.rawValues[i]);
+                final double value = type.rawToDouble(m.getRawValue(i));
+                //a difference involving NaN is not within any deadband, two NaN values are equal
+                if (Double.compare(value, previous) != 0 && !withinDeadband(previous, value)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean withinDeadband(double previous, double value) {
+
+        final double diff = Math.abs(value - previous);
+        return diff <= deadband || diff <= relativeDeadband * Math.abs(previous);
+    }
+
+    /**
+     * The values of the last passed measurement of a series. The arrays are reused as long as the values of the series
+     * keep their names and types.
+     */
+    private static class State {
+
+        final SeriesKey series;
+        String[] names = new String[0];
+        ValueType[] types = new ValueType[0];
+        long[] rawValues = new long[0];
+        String[] strings;
+        /**
+         * Arrival time of the last measurement of the series as of {@link System#nanoTime()}
+         */
+        long lastSeen;
+        int dropped;
+
+        State(SeriesKey series) {
+
+            this.series = series;
+        }
+
+        void update(Measurement m) {
+
+            final int count = m.valueCount();
+            if (count != names.length) {
+                names = new String[count];
+                types = new ValueType[count];
+                rawValues = new long[count];
+                strings = null;
+            }
+            for (int i = 0; i < count; i++) {
+                final ValueType type = m.getValueType(i);
+                names[i] = m.getValueName(i);
+                types[i] = type;
+                if (type == ValueType.STRING) {
+                    if (strings == null) {
+                        strings = new String[count];
+                    }
+                    strings[i] = (String) m.getValue(i);
+                } else {
+                    rawValues[i] = m.getRawValue(i);
+                }
+            }
+            dropped = 0;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.processor;
+
+import java.util.Collection;
+
+import io.devcon5.measure.Digester;
+import io.devcon5.measure.Measurement;
+import io.devcon5.measure.MeasurementBatch;
+import io.devcon5.measure.MeasurementBatchCodec;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Base class for processing stages between the collectors and the digesters. A processor receives measurements on
+ * its input address and publishes the processed measurements on its output address. The collector chains the
+ * configured processors, the first one receives on {@link Digester#DIGEST_ADDR}, the digesters receive from the
+ * last one.
+ * <p>
+ * The processor is configured with the following properties:
+ * <ul>
+ * <li>inputAddress - the address to receive measurements from, default is {@link Digester#DIGEST_ADDR}</li>
+ * <li>outputAddress - the address to publish processed measurements to</li>
+ * </ul>
+ */
+public abstract class Processor extends AbstractVerticle implements Digester {
+
+    private String outputAddress;
+
+    @Override
+    public void start() throws Exception {
+
+        final JsonObject config = config();
+        final String inputAddress = config.getString("inputAddress", DIGEST_ADDR);
+        this.outputAddress = config.getString("outputAddress");
+        if (outputAddress == null || outputAddress.equals(inputAddress)) {
+            throw new IllegalArgumentException("outputAddress must be set and differ from the input address");
+        }
+        MeasurementBatchCodec.register(vertx);
+        vertx.eventBus().consumer(inputAddress, msg -> process(decode(msg.body())));
+    }
+
+    /**
+     * Processes received measurements.
+     *
+     * @param measurements
+     *         the received measurements
+     */
+    protected abstract void process(Measurement[] measurements);
+
+    /**
+     * Publishes processed measurements to the next stage.
+     *
+     * @param measurements
+     *         the measurements to publish
+     */
+    protected void emit(Collection<Measurement> measurements) {
+
+        if (!measurements.isEmpty()) {
+            vertx.eventBus().publish(outputAddress, MeasurementBatch.of(measurements));
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import io.devcon5.measure.Measurement;
+import io.devcon5.measure.SeriesKey;
+import io.devcon5.measure.ValueType;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Aggregates the measurements of each series over tumbling time windows. For every numeric value of a series, the
+ * aggregator emits one measurement per window with the values <code>&lt;name&gt;_min</code>,
+ * <code>&lt;name&gt;_max</code>, <code>&lt;name&gt;_mean</code>, <code>&lt;name&gt;_count</code> and
+ * <code>&lt;name&gt;_last</code>, timestamped with the start of the window. The aggregates are updated incrementally,
+ * received measurements are not buffered and not passed on. Non-numeric values are not aggregated.
+ * <p>
+ * Windows are aligned to multiples of the window size. A window is emitted once its end plus the grace time has
+ * passed, measurements that arrive for an already emitted window are dropped.
+ * <p>
+ * The aggregator is configured with the following properties:
+ * <ul>
+ * <li>window - the size of the windows in ms, default is 60000</li>
+ * <li>grace - the time in ms to wait for late measurements after the end of a window, default is 1000</li>
+ * <li>flushInterval - the interval in ms to check for complete windows, default is 1000</li>
+ * </ul>
+ */
+public class RollupAggregator extends Processor {
+
+    public static final long DEFAULT_WINDOW = 60000L;
+    public static final long DEFAULT_GRACE = 1000L;
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+
+    /**
+     * Aggregates of the current window per series, keyed by the 64 bit hash of the series
+     */
+    private final LongObjectHashMap<Window> windows = new LongObjectHashMap<>();
+
+    private long windowNanos;
+    private long graceNanos;
+    private long flushTimer = -1;
+    private long lateMeasurements;
+
+    @Override
+    public void start() throws Exception {
+
+        configure(config());
+        super.start();
+        this.flushTimer = vertx.setPeriodic(config().getLong("flushInterval", DEFAULT_FLUSH_INTERVAL),
+                id -> emit(flush(System.currentTimeMillis() * 1_000_000)));
+    }
+
+    @Override
+    public void stop() throws Exception {
+
+        if (flushTimer != -1) {
+            vertx.cancelTimer(flushTimer);
+        }
+        emit(flush(Long.MAX_VALUE));
+    }
+
+    void configure(JsonObject config) {
+
+        this.windowNanos = config.getLong("window", DEFAULT_WINDOW) * 1_000_000;
+        this.graceNanos = config.getLong("grace", DEFAULT_GRACE) * 1_000_000;
+        if (windowNanos <= 0) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+    }
+
+    @Override
+    protected void process(Measurement[] measurements) {
+
+        List<Measurement> completed = null;
+        for (Measurement m : measurements) {
+            final Measurement window = add(m);
+            if (window != null) {
+                if (completed == null) {
+                    completed = new ArrayList<>();
+                }
+                completed.add(window);
+            }
+        }
+        if (completed != null) {
+            emit(completed);
+        }
+    }
+
+    /**
+     * Adds a measurement to the window of its series. If the measurement belongs to a later window, the current
+     * window of the series is completed and emitted.
+     *
+     * @param m
+     *         the measurement to aggregate
+     *
+     * @return the completed window, if the measurement started a new window, otherwise <code>null</code>
+     */
+    Measurement add(Measurement m) {
+
+        final long start = m.getTimestamp() - m.getTimestamp() % windowNanos;
+        final SeriesKey series = m.seriesKey();
+        Window window = windows.get(series.longHash());
+        Measurement completed = null;
+        if (window == null || !window.series.equals(series)) {
+            window = new Window(series, start);
+            windows.put(series.longHash(), window);
+        } else if (start > window.start) {
+            completed = window.emitted || window.isEmpty() ? null : window.complete();
+            window.reset(start);
+        } else if (start < window.start || window.emitted) {
+            lateMeasurements++;
+            return null;
+        }
+        window.add(m);
+        return completed;
+    }
+
+    /**
+     * Completes all windows that ended before the grace time. Series without measurements for a whole window after
+     * their last emitted window are removed.
+     *
+     * @param nowNanos
+     *         the current time in ns
+     *
+     * @return the aggregates of the completed windows
+     */
+    List<Measurement> flush(long nowNanos) {
+
+        final List<Measurement> completed = new ArrayList<>();
+        final Iterator<LongObjectMap.PrimitiveEntry<Window>> it = windows.entries().iterator();
+        while (it.hasNext()) {
+            final Window window = it.next().value();
+            final long end = window.start + windowNanos + graceNanos;
+            if (window.emitted || window.isEmpty()) {
+                if (end + windowNanos <= nowNanos) {
+                    it.remove();
+                }
+            } else if (end <= nowNanos) {
+                completed.add(window.complete());
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * @return the number of measurements dropped because their window was already emitted
+     */
+    long lateMeasurements() {
+
+        return lateMeasurements;
+    }
+
+    /**
+     * Incremental aggregates of the numeric values of one series in one window.
+     */
+    private static class Window {
+
+        final SeriesKey series;
+        long start;
+        boolean emitted;
+
+        int fields;
+        String[] names = new String[4];
+        double[] min = new double[4];
+        double[] max = new double[4];
+        double[] sum = new double[4];
+        long[] count = new long[4];
+        byte[] lastType = new byte[4];
+        long[] lastRaw = new long[4];
+
+        Window(SeriesKey series, long start) {
+
+            this.series = series;
+            this.start = start;
+        }
+
+        void reset(long start) {
+
+            this.start = start;
+            this.emitted = false;
+            Arrays.fill(count, 0, fields, 0);
+        }
+
+        boolean isEmpty() {
+
+            for (int i = 0; i < fields; i++) {
+                if (count[i] > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(Measurement m) {
+
+            for (int i = 0, values = m.valueCount(); i < values; i++) {
+                final ValueType type = m.getValueType(i);
+                if (!type.isNumeric()) {
+                    continue;
+                }
+                final int f = field(m.getValueName(i));
+                final long raw = m.getRawValue(i);
+                final double value = type.rawToDouble(raw);
+                if (count[f] == 0) {
+                    min[f] = value;
+                    max[f] = value;
+                    sum[f] = value;
+                } else {
+                    min[f] = Math.min(min[f], value);
+                    max[f] = Math.max(max[f], value);
+                    sum[f] += value;
+                }
+                count[f]++;
+                lastType[f] = type.code();
+                lastRaw[f] = raw;
+            }
+        }
+
+        private int field(String name) {
+
+            for (int i = 0; i < fields; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            if (fields == names.length) {
+                final int capacity = fields * 2;
+                names = Arrays.copyOf(names, capacity);
+                min = Arrays.copyOf(min, capacity);
+                max = Arrays.copyOf(max, capacity);
+                sum = Arrays.copyOf(sum, capacity);
+                count = Arrays.copyOf(count, capacity);
+                lastType = Arrays.copyOf(lastType, capacity);
+                lastRaw = Arrays.copyOf(lastRaw, capacity);
+            }
+            names[fields] = name;
+            count[fields] = 0;
+            return fields++;
+        }
+
+        Measurement complete() {
+
+            final Measurement.Builder builder = Measurement.builder().name(series.getName()).timestamp(start);
+            for (int i = 0; i < series.tagCount(); i++) {
+                builder.tag(series.getTagKey(i), series.getTagValue(i));
+            }
+            for (int i = 0; i < fields; i++) {
+                if (count[i] == 0) {
+                    continue;
+                }
+                final String name = names[i];
+                builder.rawValue(name + "_min", ValueType.DOUBLE, Double.doubleToRawLongBits(min[i]))
+                       .rawValue(name + "_max", ValueType.DOUBLE, Double.doubleToRawLongBits(max[i]))
+                       .rawValue(name + "_mean", ValueType.DOUBLE, Double.doubleToRawLongBits(sum[i] / count[i]))
+                       .rawValue(name + "_count", ValueType.LONG, count[i])
+                       .rawValue(name + "_last", ValueType.fromCode(lastType[i]), lastRaw[i]);
+            }
+            emitted = true;
+            return builder.build();
+        }
+    }
+}
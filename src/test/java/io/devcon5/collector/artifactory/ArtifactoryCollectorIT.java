@@ -22,13 +22,11 @@ import java.util.Arrays;
 import java.util.Base64;
 
 import io.devcon5.Docker;
-import io.devcon5.measure.BinaryEncoding;
-import io.devcon5.measure.Decoder;
 import io.devcon5.measure.Digester;
 import io.devcon5.measure.Measurement;
+import io.devcon5.measure.MeasurementBatch;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
-import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
@@ -51,8 +49,6 @@ public class ArtifactoryCollectorIT {
                                                      .withExposedPorts(8081)
                                                      .waitingFor(Wait.forHttp("/artifactory/api/application.wadl"));
 
-  private Decoder<Buffer> decoder = BinaryEncoding.decoder();
-
   @Test
   public void should_fetch_and_publish_measurement(TestContext context) throws Exception {
 
@@ -67,7 +63,7 @@ public class ArtifactoryCollectorIT {
     final Async measureReceived = context.async();
 
     vertx.eventBus().consumer(Digester.DIGEST_ADDR, msg -> {
-      Measurement[] m = decoder.decode((Buffer) msg.body());
+      Measurement[] m = ((MeasurementBatch) msg.body()).toArray();
       System.out.println(Arrays.asList(m));
 
       context.assertEquals("fileStorage", m[0].getName());
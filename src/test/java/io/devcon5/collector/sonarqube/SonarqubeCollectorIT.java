@@ -1,12 +1,10 @@
 package io.devcon5.collector.sonarqube;
 
-import io.devcon5.measure.BinaryEncoding;
-import io.devcon5.measure.Decoder;
 import io.devcon5.measure.Digester;
 import io.devcon5.measure.Measurement;
+import io.devcon5.measure.MeasurementBatch;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
-import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
@@ -29,7 +27,6 @@ public class SonarqubeCollectorIT {
     public void testCollectorLocal(TestContext context) throws Exception {
 
         final Vertx vertx = run.vertx();
-        final Decoder<Buffer> decoder = BinaryEncoding.decoder();
 
         JsonObject config = new JsonObject()
                 .put("interval", 1000)
@@ -43,7 +40,7 @@ public class SonarqubeCollectorIT {
         final Async measureReceived = context.async();
 
         vertx.eventBus().consumer(Digester.DIGEST_ADDR, msg -> {
-            Measurement[] m = decoder.decode((Buffer) msg.body());
+            Measurement[] m = ((MeasurementBatch) msg.body()).toArray();
             System.out.println(Arrays.asList(m));
             measureReceived.complete();
         });
@@ -0,0 +1,132 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.digester;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.devcon5.measure.BinaryEncoding;
+import io.devcon5.measure.Digester;
+import io.devcon5.measure.Measurement;
+import io.devcon5.measure.MeasurementBatch;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class SeriesRouterTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp(TestContext context) throws Exception {
+        this.vertx = Vertx.vertx();
+        vertx.deployVerticle(SeriesRouter.class.getName(),
+                             new DeploymentOptions().setConfig(new JsonObject().put("address", "test")
+                                                                               .put("instances", 3)),
+                             context.asyncAssertSuccess());
+    }
+
+    @After
+    public void tearDown(TestContext context) throws Exception {
+        this.vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void route_seriesAffine(TestContext context) throws Exception {
+
+        final int series = 50;
+        final Map<String, Integer> instanceOfSeries = new HashMap<>();
+        final Async received = context.async(series * 2);
+
+        for (int i = 0; i < 3; i++) {
+            final int instance = i;
+            vertx.eventBus().<MeasurementBatch>consumer(SeriesRouter.instanceAddress("test", i), msg -> {
+                for (Measurement m : msg.body()) {
+                    final String key = m.getTags().get("series");
+                    final Integer previous = instanceOfSeries.putIfAbsent(key, instance);
+                    context.assertEquals(previous == null ? instance : previous, instance);
+                    context.assertEquals(SeriesRouter.instanceOf(m, 3), instance);
+                    received.countDown();
+                }
+            });
+        }
+
+        for (int round = 0; round < 2; round++) {
+            final List<Measurement> batch = new ArrayList<>();
+            for (int i = 0; i < series; i++) {
+                batch.add(Measurement.builder().name("test").tag("series", "s" + i).value("round", round).build());
+            }
+            vertx.eventBus().publish(Digester.DIGEST_ADDR, MeasurementBatch.of(batch));
+        }
+    }
+
+    @Test
+    public void route_binaryEncoded_routedWithoutDecoding(TestContext context) throws Exception {
+
+        final int series = 50;
+        final Async received = context.async(series);
+
+        for (int i = 0; i < 3; i++) {
+            final int instance = i;
+            vertx.eventBus().<Buffer>consumer(SeriesRouter.instanceAddress("test", i), msg -> {
+                for (Measurement m : BinaryEncoding.decoder().decode(msg.body())) {
+                    context.assertEquals(SeriesRouter.instanceOf(m, 3), instance);
+                    received.countDown();
+                }
+            });
+        }
+
+        final List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < series; i++) {
+            measurements.add(Measurement.builder().name("test").tag("series", "s" + i).value("v", i).build());
+        }
+        vertx.eventBus().publish(Digester.DIGEST_ADDR, BinaryEncoding.encoder().encode(measurements));
+    }
+
+    @Test
+    public void route_batch_measurementsPassedByReference(TestContext context) throws Exception {
+
+        final List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            measurements.add(Measurement.builder().name("test").tag("series", "s" + i).value("v", i).build());
+        }
+        final Async received = context.async(measurements.size());
+
+        for (int i = 0; i < 3; i++) {
+            vertx.eventBus().<MeasurementBatch>consumer(SeriesRouter.instanceAddress("test", i), msg -> {
+                for (Measurement m : msg.body()) {
+                    context.assertTrue(m == measurements.get((int) m.getLong("v")));
+                    received.countDown();
+                }
+            });
+        }
+
+        vertx.eventBus().publish(Digester.DIGEST_ADDR, MeasurementBatch.of(measurements));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.graphite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetSocket;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class GraphiteClientTest {
+
+    private Vertx vertx;
+    private NetServer server;
+    private final Buffer received = Buffer.buffer();
+    private final List<NetSocket> connections = new ArrayList<>();
+
+    @Before
+    public void setUp(TestContext context) throws Exception {
+
+        this.vertx = Vertx.vertx();
+        this.server = vertx.createNetServer().connectHandler(socket -> {
+            connections.add(socket);
+            socket.handler(received::appendBuffer);
+        }).listen(0, "localhost", context.asyncAssertSuccess());
+    }
+
+    @After
+    public void tearDown(TestContext context) throws Exception {
+
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    private GraphiteClient client() {
+
+        return new GraphiteClient(vertx, "localhost", server.actualPort(), new JsonObject().put("batchLinger", 10L)
+                                                                                           .put("reconnectDelay", 10L));
+    }
+
+    private void awaitReceived(TestContext context, String expected, Async async) {
+
+        vertx.setPeriodic(10, id -> {
+            if (received.toString().equals(expected)) {
+                vertx.cancelTimer(id);
+                async.complete();
+            }
+        });
+    }
+
+    @Test
+    public void write_beforeConnected_batchedAndSentOnConnect(TestContext context) throws Exception {
+
+        final Async done = context.async();
+        vertx.runOnContext(v -> {
+            final GraphiteClient client = client();
+            client.write(Buffer.buffer("a 1 1\n"));
+            client.write(Buffer.buffer("b 2 1\n"));
+            client.connect();
+            awaitReceived(context, "a 1 1\nb 2 1\n", done);
+        });
+    }
+
+    @Test
+    public void write_afterConnectionLost_reconnects(TestContext context) throws Exception {
+
+        final Async first = context.async();
+        final Async second = context.async();
+        vertx.runOnContext(v -> {
+            final GraphiteClient client = client();
+            client.connect();
+            client.write(Buffer.buffer("a 1 1\n"));
+            awaitReceived(context, "a 1 1\n", first);
+            first.handler(r -> {
+                connections.forEach(NetSocket::close);
+                vertx.setTimer(50, id -> {
+                    client.write(Buffer.buffer("b 2 1\n"));
+                    awaitReceived(context, "a 1 1\nb 2 1\n", second);
+                });
+            });
+        });
+    }
+
+    @Test
+    public void close_queuedBatches_writtenBeforeClose(TestContext context) throws Exception {
+
+        final Async done = context.async();
+        vertx.runOnContext(v -> {
+            final GraphiteClient client = client();
+            client.write(Buffer.buffer("a 1 1\n"));
+            client.flush();
+            client.connect();
+            client.close(context.asyncAssertSuccess(closed -> {
+                context.assertEquals(0, client.queued());
+                awaitReceived(context, "a 1 1\n", done);
+            }));
+        });
+    }
+
+    @Test
+    public void close_unreachable_droppedAfterTimeout(TestContext context) throws Exception {
+
+        final Async done = context.async();
+        vertx.runOnContext(v -> {
+            final GraphiteClient client = new GraphiteClient(vertx,
+                                                             "localhost",
+                                                             server.actualPort(),
+                                                             new JsonObject().put("stopTimeout", 50L));
+            client.write(Buffer.buffer("a 1 1\n"));
+            client.close(context.asyncAssertSuccess(closed -> {
+                context.assertEquals(0, client.queued());
+                context.assertFalse(client.isConnected());
+                done.complete();
+            }));
+        });
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.graphite;
+
+import static org.junit.Assert.assertEquals;
+
+import io.devcon5.measure.Encoder;
+import io.devcon5.measure.Measurement;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+public class GraphiteProtocolTest {
+
+    private static final long TIMESTAMP = 1_500_000_000_123_456_789L;
+
+    private static Measurement measurement() {
+
+        return Measurement.builder()
+                          .name("artifactory.storage")
+                          .timestamp(TIMESTAMP)
+                          .tag("repo", "libs.release")
+                          .tag("host", "a b")
+                          .value("used", 12L)
+                          .value("ratio", 0.25)
+                          .value("ok", true)
+                          .value("label", "skipped")
+                          .build();
+    }
+
+    @Test
+    public void encode_flattened() throws Exception {
+
+        Encoder<Buffer> encoder = GraphiteProtocol.encoder("collector", false);
+
+        assertEquals("collector.artifactory.storage.a_b.libs_release.ok 1 1500000000\n"
+                             + "collector.artifactory.storage.a_b.libs_release.ratio 0.25 1500000000\n"
+                             + "collector.artifactory.storage.a_b.libs_release.used 12 1500000000\n",
+                     encoder.encode(measurement()).toString());
+    }
+
+    @Test
+    public void encode_tagged() throws Exception {
+
+        Encoder<Buffer> encoder = GraphiteProtocol.encoder(null, true);
+
+        assertEquals("artifactory.storage.ok;host=a_b;repo=libs.release 1 1500000000\n"
+                             + "artifactory.storage.ratio;host=a_b;repo=libs.release 0.25 1500000000\n"
+                             + "artifactory.storage.used;host=a_b;repo=libs.release 12 1500000000\n",
+                     encoder.encode(measurement()).toString());
+    }
+
+    @Test
+    public void encode_nonFinite_skipped() throws Exception {
+
+        Encoder<Buffer> encoder = GraphiteProtocol.encoder(null, false);
+
+        assertEquals("test.v 1 1500000000\n",
+                     encoder.encode(Measurement.builder()
+                                               .name("test")
+                                               .timestamp(TIMESTAMP)
+                                               .value("nan", Double.NaN)
+                                               .value("v", 1L)
+                                               .build()).toString());
+    }
+
+    @Test
+    public void encode_numbers() throws Exception {
+
+        Encoder<Buffer> encoder = GraphiteProtocol.encoder(null, false);
+
+        assertEquals("test.a -42 1500000000\n"
+                             + "test.b 42 1500000000\n"
+                             + "test.c 0.1 1500000000\n"
+                             + "test.d 1.0E20 1500000000\n"
+                             + "test.e 0 1500000000\n",
+                     encoder.encode(Measurement.builder()
+                                               .name("test")
+                                               .timestamp(TIMESTAMP)
+                                               .value("a", -42L)
+                                               .value("b", 42.0D)
+                                               .value("c", 0.1F)
+                                               .value("d", 1.0E20D)
+                                               .value("e", false)
+                                               .build()).toString());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.devcon5.digester.influx;
+
+import static org.junit.Assert.assertEquals;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+public class BufferPoolTest {
+
+    private final BufferPool pool = new BufferPool(new PooledByteBufAllocator(true));
+
+    @Test
+    public void lease_directBufferGrowsOnAppend() throws Exception {
+
+        Buffer buffer = pool.lease(4);
+        buffer.appendString("a longer text than the initial size");
+
+        assertEquals("a longer text than the initial size", buffer.toString());
+        assertEquals(1, pool.leased());
+    }
+
+    @Test
+    public void release_returnsBufferOnce() throws Exception {
+
+        Buffer buffer = pool.lease(16);
+        ByteBuf byteBuf = buffer.getByteBuf().unwrap();
+
+        pool.release(buffer);
+        pool.release(buffer);
+
+        assertEquals(0, pool.leased());
+        assertEquals(0, byteBuf.refCnt());
+    }
+
+    @Test
+    public void release_notLeased_ignored() throws Exception {
+
+        pool.lease(16);
+
+        pool.release(Buffer.buffer("spooled"));
+
+        assertEquals(1, pool.leased());
+    }
+
+    @Test
+    public void releaseAll() throws Exception {
+
+        Buffer a = pool.lease(16);
+        Buffer b = pool.lease(16);
+
+        pool.releaseAll();
+
+        assertEquals(0, pool.leased());
+        assertEquals(0, a.getByteBuf().unwrap().refCnt());
+        assertEquals(0, b.getByteBuf().unwrap().refCnt());
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.digester.influx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 100000;
+
+    @Test
+    public void get_keysEvenlyDistributed() throws Exception {
+
+        ConsistentHashRing<Integer> ring = new ConsistentHashRing<>(Arrays.asList(0, 1, 2, 3),
+                Arrays.asList("a:8086", "b:8086", "c:8086", "d:8086"), 128);
+
+        int[] counts = new int[4];
+        Random random = new Random(42);
+        for (int i = 0; i < KEYS; i++) {
+            counts[ring.get(random.nextLong())]++;
+        }
+
+        for (int count : counts) {
+            assertTrue(String.valueOf(count), count > KEYS / 4 * 0.8 && count < KEYS / 4 * 1.2);
+        }
+    }
+
+    @Test
+    public void get_nodeAdded_onlyKeysOfNewNodeMoved() throws Exception {
+
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(Arrays.asList("a", "b", "c"),
+                Arrays.asList("a", "b", "c"), 128);
+        ConsistentHashRing<String> extended = new ConsistentHashRing<>(Arrays.asList("a", "b", "c", "d"),
+                Arrays.asList("a", "b", "c", "d"), 128);
+
+        int moved = 0;
+        Random random = new Random(42);
+        for (int i = 0; i < KEYS; i++) {
+            long key = random.nextLong();
+            String before = ring.get(key);
+            String after = extended.get(key);
+            if (!before.equals(after)) {
+                assertEquals("d", after);
+                moved++;
+            }
+        }
+        assertTrue(String.valueOf(moved), moved > KEYS / 4 * 0.8 && moved < KEYS / 4 * 1.2);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.influx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.GZIPInputStream;
+
+import io.devcon5.measure.Measurement;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class InfluxClientTest {
+
+    private final Measurement m = Measurement.builder().name("test").timestamp(1).value("value", 1).build();
+
+    private Vertx vertx;
+    private HttpServer server;
+    private HttpServerRequest request;
+    private Buffer body;
+    private Deque<Integer> responses;
+    private int requests;
+
+    @Before
+    public void setUp(TestContext context) throws Exception {
+        this.vertx = Vertx.vertx();
+        this.responses = new ArrayDeque<>();
+        this.server = vertx.createHttpServer().requestHandler(req -> req.bodyHandler(b -> {
+            this.request = req;
+            this.body = b;
+            this.requests++;
+            final Integer status = responses.poll();
+            if (status == null) {
+                req.response().setStatusCode(204).end();
+            } else {
+                req.response().setStatusCode(status).putHeader("Retry-After", "0").end("error");
+            }
+        })).listen(0, context.asyncAssertSuccess());
+    }
+
+    @After
+    public void tearDown(TestContext context) throws Exception {
+        this.vertx.close(context.asyncAssertSuccess());
+    }
+
+    private InfluxClient client() {
+        return InfluxClient.create(vertx, "localhost", server.actualPort()).useDatabase("db");
+    }
+
+    @Test
+    public void send_uncompressed(TestContext context) throws Exception {
+
+        final Async done = context.async();
+        client().send(m, result -> {
+            context.assertTrue(result.succeeded());
+            context.assertEquals("db", request.getParam("db"));
+            context.assertNull(request.getHeader("Content-Encoding"));
+            context.assertEquals(LineProtocol.encoder().encode(m), body);
+            done.complete();
+        });
+    }
+
+    @Test
+    public void send_precision(TestContext context) throws Exception {
+
+        final Async done = context.async();
+        client().usePrecision(Precision.MILLISECONDS).write(Buffer.buffer("test value=1i 1\n"), result -> {
+            context.assertTrue(result.succeeded());
+            context.assertEquals("ms", request.getParam("precision"));
+            done.complete();
+        });
+    }
+
+    @Test
+    public void send_compressed(TestContext context) throws Exception {
+
+        final Async done = context.async();
+        client().useCompression(9, 0).send(m, result -> {
+            context.assertTrue(result.succeeded());
+            context.assertEquals("gzip", request.getHeader("Content-Encoding"));
+            context.assertEquals(LineProtocol.encoder().encode(m), gunzip(body));
+            done.complete();
+        });
+    }
+
+    @Test
+    public void send_belowThreshold_uncompressed(TestContext context) throws Exception {
+
+        final Async done = context.async();
+        client().useCompression(1, 1024).send(m, result -> {
+            context.assertTrue(result.succeeded());
+            context.assertNull(request.getHeader("Content-Encoding"));
+            done.complete();
+        });
+    }
+
+    @Test
+    public void send_unavailable_retried(TestContext context) throws Exception {
+
+        responses.add(503);
+        responses.add(429);
+
+        final Async done = context.async();
+        client().useRetryPolicy(new RetryPolicy(2, 1, 1, 0)).send(m, result -> {
+            context.assertTrue(result.succeeded());
+            context.assertEquals(3, requests);
+            context.assertEquals(LineProtocol.encoder().encode(m), body);
+            done.complete();
+        });
+    }
+
+    @Test
+    public void send_retryBudgetExceeded_failed(TestContext context) throws Exception {
+
+        responses.add(503);
+        responses.add(503);
+
+        final Async done = context.async();
+        client().useRetryPolicy(new RetryPolicy(1, 1, 1, 0)).send(m, result -> {
+            context.assertTrue(result.failed());
+            context.assertEquals(503, ((InfluxWriteException) result.cause()).getStatusCode());
+            context.assertEquals(2, requests);
+            done.complete();
+        });
+    }
+
+    @Test
+    public void send_badRequest_notRetried(TestContext context) throws Exception {
+
+        responses.add(400);
+
+        final Async done = context.async();
+        client().useRetryPolicy(new RetryPolicy(3, 1, 1, 0)).send(m, result -> {
+            context.assertTrue(result.failed());
+            context.assertFalse(((InfluxWriteException) result.cause()).isRetryable());
+            context.assertEquals(1, requests);
+            done.complete();
+        });
+    }
+
+    private static Buffer gunzip(Buffer data) {
+
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data.getBytes()))) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] chunk = new byte[1024];
+            for (int read = in.read(chunk); read != -1; read = in.read(chunk)) {
+                out.write(chunk, 0, read);
+            }
+            return Buffer.buffer(out.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.digester.influx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.datagram.DatagramSocket;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class InfluxUdpClientTest {
+
+    private Vertx vertx;
+    private DatagramSocket listener;
+    private List<String> datagrams;
+
+    @Before
+    public void setUp(TestContext context) throws Exception {
+        this.vertx = Vertx.vertx();
+        this.datagrams = new ArrayList<>();
+        this.listener = vertx.createDatagramSocket();
+        listener.listen(0, "127.0.0.1", context.asyncAssertSuccess());
+    }
+
+    @After
+    public void tearDown(TestContext context) throws Exception {
+        this.vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void write_linesPackedUpToMtu(TestContext context) throws Exception {
+
+        final Async received = context.async();
+        listener.handler(packet -> {
+            datagrams.add(packet.data().toString());
+            if (datagrams.size() == 3) {
+                //udp does not guarantee the order of datagrams
+                context.assertTrue(datagrams.contains("m v=1i 11\nm v=2i 12\n"));
+                context.assertTrue(datagrams.contains("m v=3i 13\nm v=4i 14\n"));
+                context.assertTrue(datagrams.contains("m,tag=long v=5i 15\n"));
+                received.complete();
+            }
+        });
+
+        //each line has 10 bytes
+        final Buffer lines = Buffer.buffer("m v=1i 11\nm v=2i 12\nm v=3i 13\nm v=4i 14\nm,tag=long v=5i 15\n");
+        final InfluxUdpClient client = InfluxUdpClient.create(vertx, "127.0.0.1", listener.localAddress().port(), 25);
+
+        client.write(lines, context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void write_lineLongerThanMtu_notSplit(TestContext context) throws Exception {
+
+        final Async received = context.async();
+        listener.handler(packet -> {
+            context.assertEquals("m v=1i 11\n", packet.data().toString());
+            received.countDown();
+        });
+
+        final InfluxUdpClient client = InfluxUdpClient.create(vertx, "127.0.0.1", listener.localAddress().port(), 4);
+
+        client.write(Buffer.buffer("m v=1i 11\n"), context.asyncAssertSuccess());
+    }
+}
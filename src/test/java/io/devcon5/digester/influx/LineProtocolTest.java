@@ -0,0 +1,158 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.influx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.devcon5.measure.BufferEncoder;
+import io.devcon5.measure.Measurement;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+public class LineProtocolTest {
+
+    private final BufferEncoder encoder = LineProtocol.encoder();
+
+    private final Measurement m = Measurement.builder()
+                                             .name("test")
+                                             .timestamp(123456789)
+                                             .tag("tag1", "t 1")
+                                             .tag("tag2", "t2")
+                                             .value("int", 123)
+                                             .value("long", 123L)
+                                             .value("double", 123.1D)
+                                             .value("boolean", true)
+                                             .value("string", "123")
+                                             .build();
+
+    @Test
+    public void encode_single() throws Exception {
+
+        Buffer b = encoder.encode(m);
+
+        assertEquals("test,tag1=t\\ 1,tag2=t2 boolean=true,double=123.1,int=123i,long=123i,string=\"123\" 123456789\n",
+                b.toString());
+    }
+
+    @Test
+    public void encode_escaped() throws Exception {
+
+        Measurement m = Measurement.builder()
+                                   .name("my test")
+                                   .timestamp(1)
+                                   .tag("tag,1", "a=b")
+                                   .value("field key", "say \"h\u00e9llo\" \\ bye")
+                                   .build();
+
+        assertEquals("my\\ test,tag\\,1=a\\=b field\\ key=\"say \\\"h\u00e9llo\\\" \\\\ bye\" 1\n",
+                encoder.encode(m).toString());
+    }
+
+    @Test
+    public void encode_seriesEscaped() throws Exception {
+
+        Measurement m = Measurement.builder()
+                                   .name("my measurement,x=y")
+                                   .timestamp(1)
+                                   .tag("tag 1", "a,b=c d")
+                                   .tag("tag2", "line\nbreak")
+                                   .value("v", 1L)
+                                   .build();
+
+        assertEquals("my\\ measurement\\,x=y,tag\\ 1=a\\,b\\=c\\ d,tag2=line\\ break v=1i 1\n",
+                encoder.encode(m).toString());
+    }
+
+    @Test
+    public void encode_numbers() throws Exception {
+
+        Measurement m = Measurement.builder()
+                                   .name("test")
+                                   .timestamp(1500000000000000000L)
+                                   .value("a", Long.MIN_VALUE)
+                                   .value("b", -0.25D)
+                                   .value("c", 0.1F)
+                                   .value("d", 1e-7D)
+                                   .value("e", 42D)
+                                   .value("f", 1.0E20D)
+                                   .value("g", 0L)
+                                   .value("h", 3.0000001D)
+                                   .build();
+
+        assertEquals("test a=-9223372036854775808i,b=-0.25,c=0.1,d=0.0000001,e=42,f=1.0E20,g=0i,h=3.0000001 1500000000000000000\n",
+                encoder.encode(m).toString());
+    }
+
+    @Test
+    public void encode_precision() throws Exception {
+
+        Measurement m = Measurement.builder().name("test").timestamp(1_500_000_123_456_789L).value("v", 1).build();
+
+        assertEquals("test v=1i 1500000123456789\n", LineProtocol.encoder(Precision.NANOSECONDS, 0).encode(m).toString());
+        assertEquals("test v=1i 1500000123456\n", LineProtocol.encoder(Precision.MICROSECONDS, 0).encode(m).toString());
+        assertEquals("test v=1i 1500000123\n", LineProtocol.encoder(Precision.MILLISECONDS, 0).encode(m).toString());
+        assertEquals("test v=1i 1500000\n", LineProtocol.encoder(Precision.SECONDS, 0).encode(m).toString());
+    }
+
+    @Test
+    public void encode_aligned() throws Exception {
+
+        Measurement m = Measurement.builder().name("test").timestamp(1_500_000_123_456_789L).value("v", 1).build();
+
+        assertEquals("test v=1i 1500000120\n",
+                LineProtocol.encoder(Precision.MILLISECONDS, 10_000_000L).encode(m).toString());
+    }
+
+    @Test
+    public void encodeTo_appendsToTarget() throws Exception {
+
+        Buffer target = Buffer.buffer("head\n");
+
+        Buffer b = encoder.encodeTo(Collections.singletonList(m), target);
+
+        assertSame(target, b);
+        assertEquals("head\n" + encoder.encode(m), b.toString());
+    }
+
+    @Test
+    public void encodeTo_largeBatchIntoDirectBuffer_sameAsEncode() throws Exception {
+
+        List<Measurement> batch = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            batch.add(Measurement.builder()
+                                 .name("test" + i)
+                                 .timestamp(i)
+                                 .tag("host", "server-" + i)
+                                 .value("value", i * 0.5D)
+                                 .build());
+        }
+
+        Buffer b = encoder.encodeTo(batch, Buffer.buffer(Unpooled.directBuffer(64)));
+
+        assertTrue(b.length() > LineWriter.CHUNK_SIZE);
+        assertEquals(encoder.encode(batch), b);
+    }
+}
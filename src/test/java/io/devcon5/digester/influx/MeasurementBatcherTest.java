@@ -0,0 +1,118 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.influx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.devcon5.measure.Measurement;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class MeasurementBatcherTest {
+
+    private Vertx vertx;
+    private List<List<Measurement>> batches;
+
+    @Before
+    public void setUp() throws Exception {
+        this.vertx = Vertx.vertx();
+        this.batches = new ArrayList<>();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.vertx.close();
+    }
+
+    @Test
+    public void add_batchSizeReached_flushed() throws Exception {
+
+        MeasurementBatcher batcher = new MeasurementBatcher(vertx, 2, 1024, 60000L, batches::add);
+
+        batcher.add(measurement("m1"));
+        assertEquals(0, batches.size());
+
+        batcher.add(measurement("m2"));
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(0, batcher.size());
+    }
+
+    @Test
+    public void add_batchBytesReached_flushed() throws Exception {
+
+        MeasurementBatcher batcher = new MeasurementBatcher(vertx, 1000, 1, 60000L, batches::add);
+
+        batcher.add(measurement("m1"));
+
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void flush_empty_noBatch() throws Exception {
+
+        MeasurementBatcher batcher = new MeasurementBatcher(vertx, 10, 1024, 60000L, batches::add);
+
+        batcher.flush();
+
+        assertEquals(0, batches.size());
+    }
+
+    @Test
+    public void add_lingerTimeReached_flushed(TestContext context) throws Exception {
+
+        final Async flushed = context.async();
+        MeasurementBatcher batcher = new MeasurementBatcher(vertx, 10, 1024, 10, batch -> {
+            context.assertEquals(1, batch.size());
+            flushed.complete();
+        });
+
+        vertx.runOnContext(v -> batcher.add(measurement("m1")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_batchSizeWithoutLinger_exception() throws Exception {
+
+        new MeasurementBatcher(vertx, 10, 1024, 0, batches::add);
+    }
+
+    @Test
+    public void create_singlePointBatchWithoutLinger_flushedImmediately() throws Exception {
+
+        MeasurementBatcher batcher = new MeasurementBatcher(vertx, 1, 1024, 0, batches::add);
+
+        batcher.add(measurement("m1"));
+
+        assertEquals(1, batches.size());
+    }
+
+    private Measurement measurement(String name) {
+        return Measurement.builder().name(name).timestamp(123).tag("tag", "t1").value("value", 1).build();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.devcon5.digester.influx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.devcon5.measure.Encoder;
+import io.devcon5.measure.Measurement;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class ParallelEncoderTest {
+
+    private final Encoder<Buffer> encoder = LineProtocol.encoder();
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() throws Exception {
+
+        this.vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext context) throws Exception {
+
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void encode_sameAsSequential(TestContext context) throws Exception {
+
+        final List<Measurement> batch = new ArrayList<>();
+        for (int i = 0; i < 1005; i++) {
+            batch.add(Measurement.builder().name("test").timestamp(i).tag("id", "t" + i).value("value", i).build());
+        }
+        final ParallelEncoder parallel = ParallelEncoder.create(vertx,
+                                                                new JsonObject().put("encodeThreads", 4)
+                                                                                .put("parallelThreshold", 1000)
+                                                                                .put("encodeChunkSize", 100),
+                                                                encoder);
+
+        context.assertTrue(parallel.isParallel(1005));
+        final Async done = context.async();
+        vertx.runOnContext(v -> parallel.encode(batch, context.asyncAssertSuccess(lines -> {
+            context.assertEquals(encoder.encode(batch).toString(), lines.toString());
+            parallel.close();
+            done.complete();
+        })));
+    }
+
+    @Test
+    public void encode_chunkFails_failedOnce(TestContext context) throws Exception {
+
+        final List<Measurement> batch = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            batch.add(Measurement.builder().name("test").timestamp(i).value("value", i).build());
+        }
+        final Encoder<Buffer> failing = measurements -> {
+            throw new IllegalStateException("encoding failed");
+        };
+        final ParallelEncoder parallel = new ParallelEncoder(failing,
+                                                             vertx.createSharedWorkerExecutor("test-encoder", 4),
+                                                             100,
+                                                             100);
+
+        final Async done = context.async();
+        vertx.runOnContext(v -> parallel.encode(batch, context.asyncAssertFailure(e -> {
+            context.assertEquals("encoding failed", e.getMessage());
+            parallel.close();
+            done.complete();
+        })));
+    }
+
+    @Test
+    public void isParallel_belowThreshold_false() throws Exception {
+
+        final ParallelEncoder parallel = ParallelEncoder.create(vertx, new JsonObject(), encoder);
+
+        assertFalse(parallel.isParallel(49999));
+        assertTrue(parallel.isParallel(50000));
+        parallel.close();
+    }
+
+    @Test
+    public void create_noThreads_disabled() throws Exception {
+
+        assertNull(ParallelEncoder.create(vertx, new JsonObject().put("encodeThreads", 0), encoder));
+    }
+
+    @Test
+    public void concat_keepsOrder() throws Exception {
+
+        Buffer b = ParallelEncoder.concat(Arrays.asList(Buffer.buffer("a\n"), Buffer.buffer("bc\n"), Buffer.buffer()));
+
+        assertEquals("a\nbc\n", b.toString());
+        assertEquals(5, b.length());
+    }
+}
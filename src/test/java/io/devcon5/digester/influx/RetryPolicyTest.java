@@ -0,0 +1,95 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.digester.influx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void delay_exponentialAndCapped() throws Exception {
+
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000, 0);
+
+        assertEquals(100, policy.delay(1, null));
+        assertEquals(200, policy.delay(2, null));
+        assertEquals(400, policy.delay(3, null));
+        assertEquals(1000, policy.delay(5, null));
+        assertEquals(1000, policy.delay(100, null));
+    }
+
+    @Test
+    public void delay_jitter_withinBounds() throws Exception {
+
+        RetryPolicy policy = new RetryPolicy(10, 1000, 1000, 0.5);
+
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.delay(1, null);
+            assertTrue(String.valueOf(delay), delay > 500 && delay <= 1000);
+        }
+    }
+
+    @Test
+    public void delay_retryAfter_precedence() throws Exception {
+
+        RetryPolicy policy = new RetryPolicy(10, 100, 10000, 0);
+
+        assertEquals(5000, policy.delay(1, "5"));
+    }
+
+    @Test
+    public void delay_retryAfter_cappedAtMaxDelay() throws Exception {
+
+        RetryPolicy policy = new RetryPolicy(10, 100, 10000, 0);
+
+        assertEquals(10000, policy.delay(1, "86400"));
+    }
+
+    @Test
+    public void parseRetryAfter() throws Exception {
+
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().plusSeconds(60));
+
+        assertEquals(-1, RetryPolicy.parseRetryAfter(null));
+        assertEquals(-1, RetryPolicy.parseRetryAfter("soon"));
+        assertEquals(2000, RetryPolicy.parseRetryAfter("2"));
+        long delay = RetryPolicy.parseRetryAfter(date);
+        assertTrue(String.valueOf(delay), delay > 50000 && delay <= 60000);
+    }
+
+    @Test
+    public void canRetry() throws Exception {
+
+        RetryPolicy policy = new RetryPolicy(2, 100, 1000, 0);
+
+        assertTrue(policy.canRetry(1, new IOException()));
+        assertTrue(policy.canRetry(2, new InfluxWriteException(503, "unavailable")));
+        assertTrue(policy.canRetry(1, new InfluxWriteException(429, "too many requests")));
+        assertFalse(policy.canRetry(3, new IOException()));
+        assertFalse(policy.canRetry(1, new InfluxWriteException(400, "partial write")));
+        assertFalse(RetryPolicy.none().canRetry(1, new IOException()));
+    }
+}
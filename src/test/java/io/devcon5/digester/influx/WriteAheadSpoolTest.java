@@ -0,0 +1,159 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.influx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WriteAheadSpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = folder.getRoot().toPath();
+    }
+
+    @Test
+    public void peek_emptySpool_null() throws Exception {
+
+        WriteAheadSpool spool = new WriteAheadSpool(null, directory, 1024, 4096);
+
+        assertTrue(spool.isEmpty());
+        assertNull(spool.peek());
+    }
+
+    @Test
+    public void append_peek_remove_inOrder() throws Exception {
+
+        WriteAheadSpool spool = new WriteAheadSpool(null, directory, 1024, 4096);
+
+        spool.append(bytes("first"));
+        spool.append(bytes("second"));
+
+        assertArrayEquals(bytes("first"), spool.peek());
+        spool.remove();
+        assertArrayEquals(bytes("second"), spool.peek());
+        spool.remove();
+        assertTrue(spool.isEmpty());
+    }
+
+    @Test
+    public void append_segmentFull_rollsToNextSegment() throws Exception {
+
+        WriteAheadSpool spool = new WriteAheadSpool(null, directory, 32, 4096);
+
+        spool.append(bytes("0123456789"));
+        spool.append(bytes("abcdefghij"));
+        spool.append(bytes("a record that is larger than a segment"));
+
+        assertArrayEquals(bytes("0123456789"), spool.peek());
+        spool.remove();
+        assertArrayEquals(bytes("abcdefghij"), spool.peek());
+        spool.remove();
+        assertArrayEquals(bytes("a record that is larger than a segment"), spool.peek());
+        spool.remove();
+        assertTrue(spool.isEmpty());
+    }
+
+    @Test
+    public void append_maxSizeExceeded_oldestDropped() throws Exception {
+
+        WriteAheadSpool spool = new WriteAheadSpool(null, directory, 32, 64);
+
+        spool.append(bytes("0123456789"));
+        spool.append(bytes("abcdefghij"));
+        spool.append(bytes("ABCDEFGHIJ"));
+
+        assertTrue(spool.size() <= 64);
+        assertArrayEquals(bytes("abcdefghij"), spool.peek());
+    }
+
+    @Test
+    public void remove_peekedRecordDropped_nextRecordKept() throws Exception {
+
+        WriteAheadSpool spool = new WriteAheadSpool(null, directory, 32, 64);
+        spool.append(bytes("0123456789"));
+        WriteAheadSpool.Record peeked = spool.peekRecord();
+
+        //the segment of the peeked record is dropped while the record is being sent
+        spool.append(bytes("abcdefghij"));
+        spool.append(bytes("ABCDEFGHIJ"));
+
+        assertFalse(spool.remove(peeked));
+        assertArrayEquals(bytes("abcdefghij"), spool.peek());
+        assertTrue(spool.remove(spool.peekRecord()));
+        assertArrayEquals(bytes("ABCDEFGHIJ"), spool.peek());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void append_closed_exception() throws Exception {
+
+        WriteAheadSpool spool = new WriteAheadSpool(null, directory, 1024, 4096);
+        spool.close();
+
+        spool.append(bytes("first"));
+    }
+
+    @Test
+    public void reopen_unreadRecords_recovered() throws Exception {
+
+        WriteAheadSpool spool = new WriteAheadSpool(null, directory, 1024, 4096);
+        spool.append(bytes("first"));
+        spool.append(bytes("second"));
+        spool.remove();
+        spool.close();
+
+        WriteAheadSpool recovered = new WriteAheadSpool(null, directory, 1024, 4096);
+
+        assertFalse(recovered.isEmpty());
+        assertArrayEquals(bytes("second"), recovered.peek());
+        recovered.remove();
+        assertTrue(recovered.isEmpty());
+        recovered.append(bytes("third"));
+        assertArrayEquals(bytes("third"), recovered.peek());
+    }
+
+    @Test
+    public void size_sumOfSegments() throws Exception {
+
+        WriteAheadSpool spool = new WriteAheadSpool(null, directory, 1024, 4096);
+        spool.append(bytes("first"));
+
+        assertEquals(1024, spool.size());
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.influx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+public class WriteQueueTest {
+
+    private final List<String> sent = new ArrayList<>();
+    private final List<Handler<Void>> pending = new ArrayList<>();
+    private final List<String> spilled = new ArrayList<>();
+
+    private void send(Buffer lines, int points, Handler<Void> done) {
+        sent.add(lines.toString());
+        pending.add(done);
+    }
+
+    private void spill(Buffer lines, int points, Handler<Void> done) {
+        spilled.add(lines.toString());
+    }
+
+    private void completeNext() {
+        pending.remove(0).handle(null);
+    }
+
+    @Test
+    public void add_belowMaxInFlight_sentImmediately() throws Exception {
+
+        WriteQueue queue = new WriteQueue(2, 10, WriteQueue.Overflow.DROP_OLDEST, this::send, null);
+
+        queue.add(Buffer.buffer("a"), 1);
+        queue.add(Buffer.buffer("b"), 1);
+        queue.add(Buffer.buffer("c"), 1);
+
+        assertEquals(2, sent.size());
+        assertEquals(2, queue.inFlight());
+        assertEquals(1, queue.depth());
+    }
+
+    @Test
+    public void completed_queuedBatchSent() throws Exception {
+
+        WriteQueue queue = new WriteQueue(1, 10, WriteQueue.Overflow.DROP_OLDEST, this::send, null);
+        queue.add(Buffer.buffer("a"), 1);
+        queue.add(Buffer.buffer("b"), 1);
+
+        completeNext();
+
+        assertEquals(2, sent.size());
+        assertEquals("b", sent.get(1));
+        assertEquals(1, queue.inFlight());
+        assertEquals(0, queue.depth());
+    }
+
+    @Test
+    public void overflow_dropOldest() throws Exception {
+
+        WriteQueue queue = new WriteQueue(1, 1, WriteQueue.Overflow.DROP_OLDEST, this::send, null);
+        queue.add(Buffer.buffer("a"), 1);
+        queue.add(Buffer.buffer("b"), 2);
+        queue.add(Buffer.buffer("c"), 3);
+
+        completeNext();
+
+        assertEquals("c", sent.get(1));
+        assertEquals(2, queue.droppedPoints());
+    }
+
+    @Test
+    public void overflow_dropNewest() throws Exception {
+
+        WriteQueue queue = new WriteQueue(1, 1, WriteQueue.Overflow.DROP_NEWEST, this::send, null);
+        queue.add(Buffer.buffer("a"), 1);
+        queue.add(Buffer.buffer("b"), 2);
+        queue.add(Buffer.buffer("c"), 3);
+
+        completeNext();
+
+        assertEquals("b", sent.get(1));
+        assertEquals(3, queue.droppedPoints());
+    }
+
+    @Test
+    public void overflow_droppedBatchPassedToDropHandler() throws Exception {
+
+        final List<String> dropped = new ArrayList<>();
+        WriteQueue queue = new WriteQueue(1, 1, WriteQueue.Overflow.DROP_OLDEST, this::send, null)
+                .dropHandler(lines -> dropped.add(lines.toString()));
+        queue.add(Buffer.buffer("a"), 1);
+        queue.add(Buffer.buffer("b"), 2);
+        queue.add(Buffer.buffer("c"), 3);
+
+        assertEquals(1, dropped.size());
+        assertEquals("b", dropped.get(0));
+    }
+
+    @Test
+    public void drain_notifiedWhenAllWritten() throws Exception {
+
+        final List<Boolean> drained = new ArrayList<>();
+        WriteQueue queue = new WriteQueue(1, 10, WriteQueue.Overflow.DROP_OLDEST, this::send, null);
+        queue.add(Buffer.buffer("a"), 1);
+        queue.add(Buffer.buffer("b"), 1);
+
+        queue.drain(v -> drained.add(true));
+        completeNext();
+        assertTrue(drained.isEmpty());
+        completeNext();
+
+        assertEquals(1, drained.size());
+        assertEquals(0, queue.inFlight());
+    }
+
+    @Test
+    public void drain_empty_notifiedImmediately() throws Exception {
+
+        final List<Boolean> drained = new ArrayList<>();
+        WriteQueue queue = new WriteQueue(1, 10, WriteQueue.Overflow.DROP_OLDEST, this::send, null);
+
+        queue.drain(v -> drained.add(true));
+
+        assertEquals(1, drained.size());
+    }
+
+    @Test
+    public void evict_queuedBatchesHandedOver() throws Exception {
+
+        WriteQueue queue = new WriteQueue(1, 10, WriteQueue.Overflow.DROP_OLDEST, this::send, null);
+        queue.add(Buffer.buffer("a"), 1);
+        queue.add(Buffer.buffer("b"), 1);
+        queue.add(Buffer.buffer("c"), 1);
+
+        assertEquals(2, queue.evict(this::spill));
+
+        assertEquals("b", spilled.get(0));
+        assertEquals("c", spilled.get(1));
+        assertEquals(0, queue.depth());
+        assertEquals(1, queue.inFlight());
+    }
+
+    @Test
+    public void overflow_spill() throws Exception {
+
+        WriteQueue queue = new WriteQueue(1, 0, WriteQueue.Overflow.SPILL, this::send, this::spill);
+        queue.add(Buffer.buffer("a"), 1);
+        queue.add(Buffer.buffer("b"), 1);
+
+        assertEquals(1, sent.size());
+        assertEquals("b", spilled.get(0));
+        assertEquals(0, queue.droppedPoints());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_spillWithoutSpool_exception() throws Exception {
+
+        new WriteQueue(1, 0, WriteQueue.Overflow.SPILL, this::send, null);
+    }
+}
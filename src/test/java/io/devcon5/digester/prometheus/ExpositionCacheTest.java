@@ -0,0 +1,139 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.prometheus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.devcon5.measure.Measurement;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+public class ExpositionCacheTest {
+
+    private static Measurement m(String series, Object value) {
+
+        return Measurement.builder().name("disk").tag("host", series).value("used", value).build();
+    }
+
+    @Test
+    public void render_groupsLinesByFamily() throws Exception {
+
+        ExpositionCache cache = new ExpositionCache();
+        cache.update(Measurement.builder()
+                                .name("disk")
+                                .tag("host", "a")
+                                .value("used", 12L)
+                                .value("ratio", 0.5)
+                                .value("ok", true)
+                                .value("label", "skipped")
+                                .build(), 0);
+        cache.update(m("b", 7L), 0);
+
+        assertEquals("# TYPE disk_ok gauge\n"
+                             + "disk_ok{host=\"a\"} 1\n"
+                             + "# TYPE disk_ratio gauge\n"
+                             + "disk_ratio{host=\"a\"} 0.5\n"
+                             + "# TYPE disk_used gauge\n"
+                             + "disk_used{host=\"a\"} 12\n"
+                             + "disk_used{host=\"b\"} 7\n",
+                     cache.render().toString());
+    }
+
+    @Test
+    public void render_sanitizedNamesAndEscapedLabels() throws Exception {
+
+        ExpositionCache cache = new ExpositionCache();
+        cache.update(Measurement.builder()
+                                .name("mongo.db-stats")
+                                .tag("1st name", "a\"b\\c\nd")
+                                .value("size", Double.NaN)
+                                .build(), 0);
+
+        assertEquals("# TYPE mongo_db_stats_size gauge\n"
+                             + "mongo_db_stats_size{_1st_name=\"a\\\"b\\\\c\\nd\"} NaN\n",
+                     cache.render().toString());
+    }
+
+    @Test
+    public void render_unchangedValues_cachedExposition() throws Exception {
+
+        ExpositionCache cache = new ExpositionCache();
+        cache.update(m("a", 1L), 0);
+        Buffer first = cache.render();
+
+        cache.update(m("a", 1L), 1);
+        assertSame(first, cache.render());
+
+        cache.update(m("a", 2L), 2);
+        Buffer second = cache.render();
+        assertNotSame(first, second);
+        assertTrue(second.toString().contains("disk_used{host=\"a\"} 2\n"));
+    }
+
+    @Test
+    public void setGzipped_changedExposition_notCached() throws Exception {
+
+        ExpositionCache cache = new ExpositionCache();
+        cache.update(m("a", 1L), 0);
+        Buffer exposition = cache.render();
+        Buffer gzipped = ExpositionCache.gzip(exposition);
+
+        cache.update(m("a", 2L), 1);
+        cache.setGzipped(exposition, gzipped);
+        assertEquals(null, cache.getGzipped());
+
+        Buffer current = cache.render();
+        cache.setGzipped(current, gzipped);
+        assertSame(gzipped, cache.getGzipped());
+    }
+
+    @Test
+    public void expire_staleSeries_removed() throws Exception {
+
+        ExpositionCache cache = new ExpositionCache();
+        cache.update(m("a", 1L), 1000);
+        cache.update(m("b", 1L), 2000);
+        cache.update(Measurement.builder().name("other").value("v", 1L).build(), 1000);
+
+        assertEquals(2, cache.expire(1500));
+
+        assertEquals(1, cache.size());
+        String exposition = cache.render().toString();
+        assertTrue(exposition.contains("host=\"b\""));
+        assertFalse(exposition.contains("host=\"a\""));
+        assertFalse(exposition.contains("other_v"));
+    }
+
+    @Test
+    public void expire_removedFamilies_namesReleased() throws Exception {
+
+        ExpositionCache cache = new ExpositionCache();
+        cache.update(m("a", 1L), 1000);
+        cache.update(Measurement.builder().name("other").value("v", 1L).build(), 1000);
+        cache.update(m("b", 1L), 2000);
+
+        cache.expire(1500);
+
+        assertEquals(1, cache.namesSize());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.digester.prometheus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPInputStream;
+
+import io.devcon5.measure.Digester;
+import io.devcon5.measure.Measurement;
+import io.devcon5.measure.MeasurementBatch;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.client.WebClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class PrometheusDigesterTest {
+
+    private Vertx vertx;
+    private PrometheusDigester digester;
+    private WebClient client;
+
+    @Before
+    public void setUp(TestContext context) throws Exception {
+
+        this.vertx = Vertx.vertx();
+        this.digester = new PrometheusDigester();
+        this.client = WebClient.create(vertx);
+        vertx.deployVerticle(digester,
+                             new DeploymentOptions().setConfig(new JsonObject().put("port", 0)
+                                                                               .put("host", "localhost")),
+                             context.asyncAssertSuccess());
+    }
+
+    @After
+    public void tearDown(TestContext context) throws Exception {
+
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void scrape_gzipped(TestContext context) throws Exception {
+
+        vertx.eventBus()
+             .publish(Digester.DIGEST_ADDR,
+                      MeasurementBatch.of(Measurement.builder().name("test").tag("t", "x").value("v", 42L).build()));
+
+        final Async scraped = context.async();
+        vertx.setTimer(100, id -> client.get(digester.actualPort(), "localhost", "/metrics")
+                                        .putHeader("Accept-Encoding", "gzip")
+                                        .send(context.asyncAssertSuccess(resp -> {
+                                            context.assertEquals(200, resp.statusCode());
+                                            context.assertEquals(PrometheusDigester.CONTENT_TYPE,
+                                                                 resp.getHeader("Content-Type"));
+                                            context.assertEquals("gzip", resp.getHeader("Content-Encoding"));
+                                            context.assertEquals("# TYPE test_v gauge\ntest_v{t=\"x\"} 42\n",
+                                                                 gunzip(resp.body()).toString());
+                                            scraped.complete();
+                                        })));
+    }
+
+    @Test
+    public void scrape_unknownPath_notFound(TestContext context) throws Exception {
+
+        client.get(digester.actualPort(), "localhost", "/other")
+              .send(context.asyncAssertSuccess(resp -> context.assertEquals(404, resp.statusCode())));
+    }
+
+    private static Buffer gunzip(Buffer data) {
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data.getBytes()))) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] chunk = new byte[1024];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return Buffer.buffer(out.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -22,6 +22,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import io.vertx.core.buffer.Buffer;
 import org.junit.Before;
 import org.junit.Test;
@@ -143,4 +147,88 @@ public class BinaryEncodingTest {
         assertFalse(m2[0].getValues().containsKey("string"));
 
     }
+
+    @Test
+    public void encode_decode_legacyEncoding() throws Exception {
+
+        Measurement m1 = Measurement.builder()
+                                    .name("test")
+                                    .timestamp(123456789)
+                                    .tag("tag1", "t1")
+                                    .value("int", 123)
+                                    .value("double", 123.1D)
+                                    .value("string", "123")
+                                    .build();
+        Measurement m2 = Measurement.builder()
+                                    .name("test2")
+                                    .timestamp(123456789)
+                                    .tag("tag1", "t3")
+                                    .value("long", 456L)
+                                    .build();
+
+        Buffer b = BinaryEncoding.legacyEncoder().encode(m1, m2);
+
+        Measurement[] ms = decoder.decode(b);
+
+        assertEquals(2, ms.length);
+        assertEquals(m1, ms[0]);
+        assertEquals(m2, ms[1]);
+    }
+
+    @Test
+    public void encode_decode_delimiterBytesInValues() throws Exception {
+
+        Measurement m = Measurement.builder()
+                                   .name("t\u00fcst \u00fa\u00fd\u00fe")
+                                   .timestamp(0x00fafdfe00L)
+                                   .tag("t\u00e4g", "\u00fa\u00fd\u00fe\u0000")
+                                   .value("int", 0xfa00fd00)
+                                   .value("negativeInt", Integer.MIN_VALUE)
+                                   .value("long", Long.MAX_VALUE)
+                                   .value("negativeLong", -1L)
+                                   .value("float", Float.intBitsToFloat(0x00fafdfe))
+                                   .value("string", "\u0000\u00fa")
+                                   .build();
+
+        Measurement[] m2 = decoder.decode(encoder.encode(m));
+
+        assertEquals(m, m2[0]);
+    }
+
+    @Test
+    public void decode_concatenatedBlocks() throws Exception {
+
+        Measurement m1 = Measurement.builder().name("test1").timestamp(1).value("int", 1).build();
+        Measurement m2 = Measurement.builder().name("test2").timestamp(2).value("int", 2).build();
+
+        Buffer b = encoder.encode(m1).appendBuffer(encoder.encode(m2));
+
+        Measurement[] ms = decoder.decode(b);
+
+        assertEquals(2, ms.length);
+        assertEquals(m1, ms[0]);
+        assertEquals(m2, ms[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_truncatedBuffer() throws Exception {
+
+        Measurement m = Measurement.builder().name("test").timestamp(1).value("string", "value").build();
+        Buffer b = encoder.encode(m);
+
+        decoder.decode(b.getBuffer(0, b.length() - 2));
+    }
+
+    @Test
+    public void decode_sink_measurementsInOrder() throws Exception {
+
+        Measurement m1 = Measurement.builder().name("m1").timestamp(1).value("v", 1).build();
+        Measurement m2 = Measurement.builder().name("m2").timestamp(2).value("v", 2).build();
+        Buffer b = encoder.encode(m1, m2).appendBuffer(BinaryEncoding.legacyEncoder().encode(m1));
+
+        List<Measurement> received = new ArrayList<>();
+        decoder.decode(b, received::add);
+
+        assertEquals(Arrays.asList(m1, m2, m1), received);
+    }
 }
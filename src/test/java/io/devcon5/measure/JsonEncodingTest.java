@@ -21,6 +21,11 @@ package io.devcon5.measure;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import org.junit.Before;
 import org.junit.Test;
@@ -120,4 +125,79 @@ public class JsonEncodingTest {
 
     }
 
+    @Test
+    public void bufferEncoding_roundtrip_allTypes() throws Exception {
+
+        Measurement m = Measurement.builder()
+                                   .name("test")
+                                   .timestamp(1_500_000_000_000_000_000L)
+                                   .tag("tag1", "t\"1")
+                                   .value("int", 123)
+                                   .value("long", 12_345_678_901L)
+                                   .value("double", 123.1D)
+                                   .value("boolean", true)
+                                   .value("string", "a\nb")
+                                   .build();
+
+        Buffer b = JsonEncoding.bufferEncoder().encode(m, m);
+        Measurement[] ms = JsonEncoding.bufferDecoder().decode(b);
+
+        assertEquals(2, ms.length);
+        assertEquals(m, ms[0]);
+        assertEquals(m, ms[1]);
+    }
+
+    @Test
+    public void bufferEncoding_compatibleWithTreeEncoding() throws Exception {
+
+        Measurement m = Measurement.builder()
+                                   .name("test")
+                                   .timestamp(123456789)
+                                   .tag("tag1", "t1")
+                                   .value("int", 123)
+                                   .value("double", 0.5D)
+                                   .build();
+
+        Buffer streamed = JsonEncoding.bufferEncoder().encode(m);
+
+        assertEquals(encoder.encode(m), new JsonArray(streamed));
+        assertEquals(m, decoder.decode(new JsonArray(streamed))[0]);
+        assertEquals(m, JsonEncoding.bufferDecoder().decode(Buffer.buffer(encoder.encode(m).encode()))[0]);
+    }
+
+    @Test
+    public void bufferDecoder_numericTagsAndUnknownFields() throws Exception {
+
+        Measurement[] ms = JsonEncoding.bufferDecoder()
+                                       .decode(Buffer.buffer("[{\"name\":\"test\",\"timestamp\":1.5E9,"
+                                                                     + "\"extra\":{\"a\":[1,2]},"
+                                                                     + "\"tags\":{\"port\":8080},"
+                                                                     + "\"values\":{\"v\":1}}]"));
+
+        assertEquals(1, ms.length);
+        assertEquals("8080", ms[0].getTags().get("port"));
+        assertEquals(1_500_000_000L, ms[0].getTimestamp());
+        assertEquals(1L, ms[0].getLong("v"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bufferDecoder_invalidEncoding() throws Exception {
+
+        JsonEncoding.bufferDecoder().decode(Buffer.buffer("[\"abc\"]"));
+    }
+
+    @Test
+    public void decode_sink_measurementsInOrder() throws Exception {
+
+        Measurement m1 = Measurement.builder().name("m1").timestamp(1).value("v", 1).build();
+        Measurement m2 = Measurement.builder().name("m2").timestamp(2).value("v", 2).build();
+
+        List<Measurement> fromTree = new ArrayList<>();
+        decoder.decode(encoder.encode(m1, m2), fromTree::add);
+        List<Measurement> fromBuffer = new ArrayList<>();
+        JsonEncoding.bufferDecoder().decode(JsonEncoding.bufferEncoder().encode(m1, m2), fromBuffer::add);
+
+        assertEquals(Arrays.asList(m1, m2), fromTree);
+        assertEquals(Arrays.asList(m1, m2), fromBuffer);
+    }
 }
@@ -0,0 +1,74 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.measure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class MeasurementBatchCodecTest {
+
+    private final MeasurementBatchCodec codec = new MeasurementBatchCodec();
+
+    private final MeasurementBatch batch = MeasurementBatch.of(
+            Measurement.builder().name("test1").timestamp(123).tag("tag1", "t1").value("int", 1).build(),
+            Measurement.builder().name("test2").timestamp(456).tag("tag1", "t2").value("string", "2").build());
+
+    @Test
+    public void transform_sameInstance() throws Exception {
+
+        assertSame(batch, codec.transform(batch));
+    }
+
+    @Test
+    public void encodeToWire_decodeFromWire() throws Exception {
+
+        Buffer wire = Buffer.buffer().appendString("header");
+
+        codec.encodeToWire(wire, batch);
+        MeasurementBatch decoded = codec.decodeFromWire(6, wire);
+
+        assertEquals(batch, decoded);
+    }
+
+    @Test
+    public void publish_local_passedByReference(TestContext context) throws Exception {
+
+        final Vertx vertx = Vertx.vertx();
+        final Async received = context.async();
+
+        MeasurementBatchCodec.register(vertx);
+        MeasurementBatchCodec.register(vertx);
+
+        vertx.eventBus().consumer(Digester.DIGEST_ADDR, msg -> {
+            context.assertTrue(batch == msg.body());
+            received.complete();
+            vertx.close();
+        });
+        vertx.eventBus().publish(Digester.DIGEST_ADDR, batch);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.measure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+public class MeasurementBatchTest {
+
+    private final Measurement m1 = Measurement.builder()
+                                              .name("test")
+                                              .timestamp(123456789)
+                                              .tag("tag1", "t1")
+                                              .tag("tag2", "t2")
+                                              .value("int", 123)
+                                              .value("long", 123L)
+                                              .value("float", 123.1F)
+                                              .value("double", 123.1D)
+                                              .value("boolean", true)
+                                              .value("string", "123")
+                                              .build();
+    private final Measurement m2 = Measurement.builder()
+                                              .name("test2")
+                                              .timestamp(987654321)
+                                              .tag("tag1", "t3")
+                                              .value("int", -456)
+                                              .build();
+
+    @Test
+    public void of_get_sameMeasurements() throws Exception {
+
+        MeasurementBatch batch = MeasurementBatch.of(m1, m2);
+
+        assertEquals(2, batch.size());
+        assertEquals(m1, batch.get(0));
+        assertEquals(m2, batch.get(1));
+    }
+
+    @Test
+    public void of_empty() throws Exception {
+
+        MeasurementBatch batch = MeasurementBatch.of();
+
+        assertTrue(batch.isEmpty());
+        assertEquals(0, batch.toArray().length);
+    }
+
+    @Test
+    public void binaryEncoding_batch_sameAsMeasurements() throws Exception {
+
+        Encoder<Buffer> encoder = BinaryEncoding.encoder();
+        MeasurementBatch batch = MeasurementBatch.of(m1, m2);
+
+        Buffer fromBatch = encoder.encode(batch.asList());
+
+        assertEquals(encoder.encode(m1, m2), fromBatch);
+        assertEquals(batch, BinaryEncoding.decoder().decodeBatch(fromBatch));
+    }
+}
@@ -19,10 +19,12 @@
 package io.devcon5.measure;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import org.junit.Test;
 
@@ -178,4 +180,59 @@ public class MeasurementTest {
         assertNotNull(Measurement.builder().name("test").timestamp(-123).build());
     }
 
+    @Test
+    public void typedAccessors() throws Exception {
+
+        Measurement m = Measurement.builder()
+                                   .name("name")
+                                   .timestamp(123)
+                                   .value("int", 123)
+                                   .value("long", 123L)
+                                   .value("float", 1.5F)
+                                   .value("double", 123.1D)
+                                   .value("boolean", true)
+                                   .value("string", "123")
+                                   .build();
+
+        assertEquals(123L, m.getLong("int"));
+        assertEquals(123L, m.getLong("long"));
+        assertEquals(1L, m.getLong("float"));
+        assertEquals(1.5D, m.getDouble("float"), 0.0001);
+        assertEquals(123.1D, m.getDouble("double"), 0.0001);
+        assertEquals(123D, m.getDouble("int"), 0.0001);
+        assertTrue(m.getBoolean("boolean"));
+        assertEquals("123", m.getString("string"));
+        assertTrue(m.hasValue("string"));
+        assertFalse(m.hasValue("unknown"));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void getLong_unknownValue_exception() throws Exception {
+
+        Measurement.builder().name("name").timestamp(123).value("test", 123).build().getLong("unknown");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getLong_stringValue_exception() throws Exception {
+
+        Measurement.builder().name("name").timestamp(123).value("test", "123").build().getLong("test");
+    }
+
+    @Test
+    public void builder_sameValueTwice_lastWins() throws Exception {
+
+        Measurement m = Measurement.builder()
+                                   .name("name")
+                                   .timestamp(123)
+                                   .value("b", "first")
+                                   .value("a", 1)
+                                   .value("b", 2L)
+                                   .build();
+
+        assertEquals(2, m.valueCount());
+        assertEquals("a", m.getValueName(0));
+        assertEquals(ValueType.LONG, m.getValueType(1));
+        assertEquals(Long.valueOf(2L), m.getValues().get("b"));
+    }
+
 }
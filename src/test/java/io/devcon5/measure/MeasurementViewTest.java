@@ -0,0 +1,136 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.measure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+public class MeasurementViewTest {
+
+    private static final Measurement M1 = Measurement.builder()
+                                                     .name("cpu")
+                                                     .timestamp(123456789)
+                                                     .tag("host", "db1")
+                                                     .tag("core", "0")
+                                                     .value("int", 123)
+                                                     .value("long", -5L)
+                                                     .value("float", 1.5F)
+                                                     .value("double", 0.25D)
+                                                     .value("boolean", true)
+                                                     .value("string", "x")
+                                                     .build();
+    private static final Measurement M2 = Measurement.builder()
+                                                     .name("d\u00fcsk")
+                                                     .timestamp(2)
+                                                     .tag("m\u00f6unt", "/")
+                                                     .value("used", 7L)
+                                                     .build();
+
+    @Test
+    public void next_allMeasurementsOfAllBlocks() throws Exception {
+
+        Buffer buf = BinaryEncoding.encoder().encode(M1, M2).appendBuffer(BinaryEncoding.encoder().encode(M1));
+
+        MeasurementView view = MeasurementView.of(buf);
+
+        assertTrue(view.next());
+        assertEquals(M1, view.toMeasurement());
+        assertTrue(view.next());
+        assertEquals(M2, view.toMeasurement());
+        assertTrue(view.next());
+        assertEquals("cpu", view.getName());
+        assertFalse(view.next());
+    }
+
+    @Test
+    public void accessors_readLazily() throws Exception {
+
+        MeasurementView view = MeasurementView.of(BinaryEncoding.encoder().encode(M1, M2));
+
+        assertTrue(view.next());
+        assertTrue(view.nameEquals("cpu"));
+        assertFalse(view.nameEquals("cp"));
+        assertEquals(123456789L, view.getTimestamp());
+        assertEquals(2, view.tagCount());
+        assertEquals("db1", view.getTag("host"));
+        assertNull(view.getTag("other"));
+        assertTrue(view.tagEquals("core", "0"));
+        assertFalse(view.tagEquals("core", "1"));
+        assertEquals(6, view.valueCount());
+        assertEquals(ValueType.FLOAT, view.getValueType("float"));
+        assertEquals(-5.0, view.getDouble("long"), 0);
+        assertEquals(0.25, view.getDouble("double"), 0);
+        assertTrue(Double.isNaN(view.getDouble("string")));
+
+        //accessors must not affect the iteration
+        assertTrue(view.next());
+        assertTrue(view.nameEquals("d\u00fcsk"));
+        assertTrue(view.tagEquals("m\u00f6unt", "/"));
+        assertFalse(view.next());
+    }
+
+    @Test
+    public void seriesHash_sameAsSeriesKey() throws Exception {
+
+        Measurement unsortedTags = Measurement.builder()
+                                              .name("cpu")
+                                              .timestamp(1)
+                                              .tag("z", "1")
+                                              .tag("a", "2")
+                                              .value("v", 1L)
+                                              .build();
+        Buffer buf = BinaryEncoding.encoder().encode(M1, M2).appendBuffer(BinaryEncoding.encoder().encode(unsortedTags));
+
+        MeasurementView view = MeasurementView.of(buf);
+        while (view.next()) {
+            assertEquals(view.toMeasurement().seriesKey().longHash(), view.seriesHash());
+        }
+    }
+
+    @Test
+    public void copyTo_toBlock_decodable() throws Exception {
+
+        MeasurementView view = MeasurementView.of(BinaryEncoding.encoder().encode(M1, M2, M1));
+        Buffer copied = Buffer.buffer();
+        int count = 0;
+        while (view.next()) {
+            if (view.nameEquals("cpu")) {
+                view.copyTo(copied);
+                count++;
+            }
+        }
+
+        Measurement[] ms = BinaryEncoding.decoder().decode(MeasurementView.toBlock(copied, count));
+
+        assertEquals(2, ms.length);
+        assertEquals(M1, ms[0]);
+        assertEquals(M1, ms[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void next_legacyEncoding_exception() throws Exception {
+
+        MeasurementView.of(BinaryEncoding.legacyEncoder().encode(M1)).next();
+    }
+}
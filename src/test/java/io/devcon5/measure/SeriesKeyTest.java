@@ -0,0 +1,106 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.measure;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class SeriesKeyTest {
+
+    @Test
+    public void of_sameSeries_sameInstance() throws Exception {
+
+        Map<String, String> tags1 = new LinkedHashMap<>();
+        tags1.put("tag1", "t1");
+        tags1.put("tag2", "t2");
+        Map<String, String> tags2 = new LinkedHashMap<>();
+        tags2.put("tag2", "t2");
+        tags2.put("tag1", "t1");
+
+        assertSame(SeriesKey.of("test", tags1), SeriesKey.of("test", tags2));
+    }
+
+    @Test
+    public void measurements_sameSeries_shareKey() throws Exception {
+
+        Measurement m1 = Measurement.builder().name("test").tag("tag1", "t1").value("v", 1).build();
+        Measurement m2 = Measurement.builder().name("test").tag("tag1", "t1").value("v", 2).build();
+
+        assertSame(m1.seriesKey(), m2.seriesKey());
+        assertSame(m1.getTags(), m2.getTags());
+    }
+
+    @Test
+    public void of_differentSeries_notEqual() throws Exception {
+
+        Map<String, String> tags1 = new HashMap<>();
+        tags1.put("ab", "c");
+        Map<String, String> tags2 = new HashMap<>();
+        tags2.put("a", "bc");
+
+        SeriesKey key1 = SeriesKey.of("test", tags1);
+        SeriesKey key2 = SeriesKey.of("test", tags2);
+
+        assertNotEquals(key1, key2);
+        assertNotEquals(key1.longHash(), key2.longHash());
+    }
+
+    @Test
+    public void encoded_computedOncePerEncoding() throws Exception {
+
+        final AtomicInteger calls = new AtomicInteger();
+        SeriesKey.Encoding name = SeriesKey.Encoding.of(k -> {
+            calls.incrementAndGet();
+            return k.getName().getBytes(StandardCharsets.UTF_8);
+        });
+        SeriesKey.Encoding tagCount = SeriesKey.Encoding.of(k -> new byte[] {(byte) k.tagCount()});
+        SeriesKey key = SeriesKey.of("encoded", Collections.singletonMap("a", "1"));
+
+        assertEquals("encoded", new String(key.encoded(name), StandardCharsets.UTF_8));
+        assertArrayEquals(new byte[] {1}, key.encoded(tagCount));
+        assertSame(key.encoded(name), key.encoded(name));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void table_bounded() throws Exception {
+
+        SeriesKeyTable table = new SeriesKeyTable(16);
+
+        for (int i = 0; i < 1000; i++) {
+            table.intern(SeriesKey.of("test" + i, new HashMap<>()));
+        }
+
+        assertEquals(16, table.size());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.devcon5.measure.Measurement;
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void report_empty_histogram_reportsNothing() throws Exception {
+
+        assertFalse(new Histogram().report(Measurement.builder().name("test")));
+    }
+
+    @Test
+    public void report_recordedValues_percentilesWithinBuckets() throws Exception {
+
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        Measurement.Builder builder = Measurement.builder().name("test");
+        assertTrue(histogram.report(builder));
+        Measurement m = builder.build();
+
+        assertEquals(1000L, m.getLong("count"));
+        assertEquals(500500L, m.getLong("sum"));
+        assertEquals(1L, m.getLong("min"));
+        assertEquals(1000L, m.getLong("max"));
+        assertEquals(500.5, m.getDouble("mean"), 0.001);
+        //power of two buckets, the error is less than the bucket width
+        assertEquals(500, m.getLong("p50"), 256);
+        assertEquals(900, m.getLong("p90"), 512);
+        assertTrue(m.getLong("p99") <= 1000);
+        assertTrue(m.getLong("p50") <= m.getLong("p90"));
+        assertTrue(m.getLong("p90") <= m.getLong("p99"));
+    }
+
+    @Test
+    public void report_resetsHistogram() throws Exception {
+
+        Histogram histogram = new Histogram();
+        histogram.record(42);
+        assertTrue(histogram.report(Measurement.builder().name("test")));
+
+        assertFalse(histogram.report(Measurement.builder().name("test")));
+
+        histogram.record(7);
+        Measurement.Builder builder = Measurement.builder().name("test");
+        assertTrue(histogram.report(builder));
+        Measurement m = builder.build();
+        assertEquals(1L, m.getLong("count"));
+        assertEquals(7L, m.getLong("min"));
+        assertEquals(7L, m.getLong("max"));
+        assertEquals(7L, m.getLong("p99"));
+    }
+
+    @Test
+    public void record_negativeValue_recordedAsZero() throws Exception {
+
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+
+        Measurement.Builder builder = Measurement.builder().name("test");
+        assertTrue(histogram.report(builder));
+        assertEquals(0L, builder.build().getLong("max"));
+    }
+}
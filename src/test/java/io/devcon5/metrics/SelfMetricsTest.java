@@ -0,0 +1,87 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.devcon5.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import io.devcon5.measure.Measurement;
+import org.junit.Test;
+
+public class SelfMetricsTest {
+
+    private static List<Measurement> reported(String name) {
+
+        return SelfMetrics.report()
+                          .stream()
+                          .filter(m -> m.getName().equals(SelfMetrics.PREFIX + name))
+                          .collect(Collectors.toList());
+    }
+
+    @Test
+    public void counter_sameNameAndTags_sameCounter() throws Exception {
+
+        Counter c1 = SelfMetrics.counter("test.same", "a", "1");
+        Counter c2 = SelfMetrics.counter("test.same", "a", "1");
+        Counter c3 = SelfMetrics.counter("test.same", "a", "2");
+
+        assertSame(c1, c2);
+        assertFalse(c1 == c3);
+    }
+
+    @Test
+    public void report_counter_prefixedMeasurementWithTags() throws Exception {
+
+        SelfMetrics.counter("test.counter", "component", "x", "instance", null).add(3);
+
+        List<Measurement> ms = reported("test.counter");
+
+        assertEquals(1, ms.size());
+        assertEquals("x", ms.get(0).getTags().get("component"));
+        assertFalse(ms.get(0).getTags().containsKey("instance"));
+        assertEquals(3L, ms.get(0).getLong("count"));
+    }
+
+    @Test
+    public void report_registeredMetric_untilUnregistered() throws Exception {
+
+        SelfMetrics.register("test.gauge", m -> {
+            m.value("depth", 5);
+            return true;
+        }, "queue", "q1");
+
+        assertEquals(1, reported("test.gauge").size());
+
+        SelfMetrics.unregister("test.gauge", "queue", "q1");
+
+        assertTrue(reported("test.gauge").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void counter_existingHistogram_exception() throws Exception {
+
+        SelfMetrics.histogram("test.conflict");
+        SelfMetrics.counter("test.conflict");
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.devcon5.measure.Measurement;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+public class DeadbandFilterTest {
+
+    private static Measurement m(String series, Object value) {
+
+        return Measurement.builder().name("test").tag("series", series).value("value", value).build();
+    }
+
+    private static DeadbandFilter filter(JsonObject config) {
+
+        DeadbandFilter filter = new DeadbandFilter();
+        filter.configure(config);
+        return filter;
+    }
+
+    @Test
+    public void accept_unchanged_dropped() throws Exception {
+
+        DeadbandFilter filter = filter(new JsonObject());
+
+        assertTrue(filter.accept(m("a", 1L), 0L));
+        assertFalse(filter.accept(m("a", 1L), 0L));
+        assertTrue(filter.accept(m("b", 1L), 0L));
+        assertTrue(filter.accept(m("a", 2L), 0L));
+    }
+
+    @Test
+    public void accept_absoluteDeadband() throws Exception {
+
+        DeadbandFilter filter = filter(new JsonObject().put("deadband", 0.5));
+
+        assertTrue(filter.accept(m("a", 10.0), 0L));
+        assertFalse(filter.accept(m("a", 10.3), 0L));
+        assertFalse(filter.accept(m("a", 10.5), 0L));
+        assertTrue(filter.accept(m("a", 10.6), 0L));
+    }
+
+    @Test
+    public void accept_relativeDeadband() throws Exception {
+
+        DeadbandFilter filter = filter(new JsonObject().put("relativeDeadband", 0.1));
+
+        assertTrue(filter.accept(m("a", 100L), 0L));
+        assertFalse(filter.accept(m("a", 109L), 0L));
+        assertTrue(filter.accept(m("a", 111L), 0L));
+    }
+
+    @Test
+    public void accept_driftAccumulated() throws Exception {
+
+        DeadbandFilter filter = filter(new JsonObject().put("deadband", 1.0));
+
+        assertTrue(filter.accept(m("a", 0.0), 0L));
+        assertFalse(filter.accept(m("a", 0.6), 0L));
+        assertTrue(filter.accept(m("a", 1.2), 0L));
+    }
+
+    @Test
+    public void accept_nonNumericChanged() throws Exception {
+
+        DeadbandFilter filter = filter(new JsonObject().put("deadband", 100.0));
+
+        assertTrue(filter.accept(m("a", "up"), 0L));
+        assertFalse(filter.accept(m("a", "up"), 0L));
+        assertTrue(filter.accept(m("a", "down"), 0L));
+        assertTrue(filter.accept(m("a", true), 0L));
+    }
+
+    @Test
+    public void accept_heartbeat() throws Exception {
+
+        DeadbandFilter filter = filter(new JsonObject().put("heartbeat", 2));
+
+        assertTrue(filter.accept(m("a", 1L), 0L));
+        assertFalse(filter.accept(m("a", 1L), 0L));
+        assertFalse(filter.accept(m("a", 1L), 0L));
+        assertTrue(filter.accept(m("a", 1L), 0L));
+        assertFalse(filter.accept(m("a", 1L), 0L));
+    }
+
+    @Test
+    public void accept_absoluteAndRelativeDeadband_changeExceedsBoth() throws Exception {
+
+        DeadbandFilter filter = filter(new JsonObject().put("deadband", 5.0).put("relativeDeadband", 0.1));
+
+        assertTrue(filter.accept(m("a", 100.0), 0L));
+        //within the relative deadband only
+        assertFalse(filter.accept(m("a", 108.0), 0L));
+        assertTrue(filter.accept(m("a", 111.0), 0L));
+        //within the absolute deadband only
+        assertTrue(filter.accept(m("b", 10.0), 0L));
+        assertFalse(filter.accept(m("b", 14.0), 0L));
+        assertTrue(filter.accept(m("b", 15.5), 0L));
+    }
+
+    @Test
+    public void accept_nan_changed() throws Exception {
+
+        DeadbandFilter filter = filter(new JsonObject().put("deadband", 1.0));
+
+        assertTrue(filter.accept(m("a", 1.0), 0L));
+        assertTrue(filter.accept(m("a", Double.NaN), 0L));
+        assertFalse(filter.accept(m("a", Double.NaN), 0L));
+        assertTrue(filter.accept(m("a", 1.0), 0L));
+    }
+
+    @Test
+    public void expire_idleSeries_evicted() throws Exception {
+
+        DeadbandFilter filter = filter(new JsonObject().put("expiry", 1000L));
+        long second = 1_000_000_000L;
+
+        assertTrue(filter.accept(m("a", 1L), second));
+        assertTrue(filter.accept(m("b", 1L), 3 * second));
+
+        assertEquals(1, filter.expire(3 * second));
+
+        assertEquals(1, filter.seriesCount());
+        assertTrue(filter.accept(m("a", 1L), 3 * second));
+    }
+
+    @Test
+    public void expire_laggingTimestamps_keptByArrival() throws Exception {
+
+        DeadbandFilter filter = filter(new JsonObject().put("expiry", 1000L));
+        long second = 1_000_000_000L;
+        Measurement old = Measurement.builder().name("test").tag("series", "a").timestamp(0).value("value", 1L).build();
+
+        assertTrue(filter.accept(old, 10 * second));
+        assertEquals(0, filter.expire(10 * second));
+
+        assertFalse(filter.accept(old, 10 * second));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *     Universal Collector for Metrics
+ *     Copyright (C) 2017-2018 DevCon5 GmbH, Switzerland
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.devcon5.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import io.devcon5.measure.Measurement;
+import io.vertx.core.json.JsonObject;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RollupAggregatorTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final long T0 = 1_500_000_000L * SECOND;
+
+    private RollupAggregator aggregator;
+
+    @Before
+    public void setUp() throws Exception {
+
+        aggregator = new RollupAggregator();
+        aggregator.configure(new JsonObject().put("window", 10000L).put("grace", 1000L));
+    }
+
+    private static Measurement m(long timestamp, long value) {
+
+        return Measurement.builder()
+                          .name("test")
+                          .tag("host", "a")
+                          .timestamp(timestamp)
+                          .value("value", value)
+                          .value("state", "up")
+                          .build();
+    }
+
+    @Test
+    public void add_nextWindow_previousWindowCompleted() throws Exception {
+
+        assertNull(aggregator.add(m(T0 + SECOND, 3)));
+        assertNull(aggregator.add(m(T0 + 2 * SECOND, 1)));
+        assertNull(aggregator.add(m(T0 + 3 * SECOND, 2)));
+
+        Measurement window = aggregator.add(m(T0 + 10 * SECOND, 5));
+
+        assertEquals(T0, window.getTimestamp());
+        assertEquals("a", window.getTags().get("host"));
+        assertEquals(1.0, window.getDouble("value_min"), 0.0);
+        assertEquals(3.0, window.getDouble("value_max"), 0.0);
+        assertEquals(2.0, window.getDouble("value_mean"), 0.0);
+        assertEquals(3L, window.getLong("value_count"));
+        assertEquals(2L, window.getValues().get("value_last"));
+        assertEquals(5, window.valueCount());
+    }
+
+    @Test
+    public void flush_afterGrace_completed() throws Exception {
+
+        aggregator.add(m(T0 + SECOND, 3));
+
+        assertTrue(aggregator.flush(T0 + 10 * SECOND).isEmpty());
+
+        List<Measurement> windows = aggregator.flush(T0 + 11 * SECOND);
+        assertEquals(1, windows.size());
+        assertEquals(1L, windows.get(0).getLong("value_count"));
+    }
+
+    @Test
+    public void add_emittedWindow_late() throws Exception {
+
+        aggregator.add(m(T0 + SECOND, 3));
+        aggregator.flush(T0 + 11 * SECOND);
+
+        assertNull(aggregator.add(m(T0 + 2 * SECOND, 3)));
+        assertEquals(1, aggregator.lateMeasurements());
+        assertTrue(aggregator.flush(T0 + 12 * SECOND).isEmpty());
+    }
+}